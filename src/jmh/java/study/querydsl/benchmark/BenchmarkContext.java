@@ -0,0 +1,52 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Application;
+
+import javax.persistence.EntityManager;
+
+// 벤치마크용 스프링 컨텍스트 + H2 데이터 적재
+// local 프로필(InitMember)과 SQL 로그, count 캐시는 측정을 흐리므로 끈다
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraArgs) {
+        final String[] defaults = {
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--app.sql-log.sample-rate=0",
+                "--member.count-cache.ttl-millis=0",
+                "--member.count-cache.stale-millis=0"
+        };
+        final String[] args = new String[defaults.length + extraArgs.length];
+        System.arraycopy(defaults, 0, args, 0, defaults.length);
+        System.arraycopy(extraArgs, 0, args, defaults.length, extraArgs.length);
+
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    // member_id 1..members, team id 1..teams, 나이는 0~99 균등 분포
+    static void seed(ConfigurableApplicationContext context, int members, int teams) {
+        final EntityManager em = context.getBean(EntityManager.class);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            em.createNativeQuery("insert into team (id, name) select x, concat('team', x) from system_range(1, ?)")
+                    .setParameter(1, teams)
+                    .executeUpdate();
+            em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                    "select x, concat('member', x), mod(x, 100), mod(x, ?) + 1 from system_range(1, ?)")
+                    .setParameter(1, teams)
+                    .setParameter(2, members)
+                    .executeUpdate();
+        });
+    }
+}
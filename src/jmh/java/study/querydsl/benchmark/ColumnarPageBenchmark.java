@@ -0,0 +1,68 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberColumnarPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+// Page<MemberTeamDto> vs 컬럼형 페이지
+// 처리량/할당량은 jmh(gc 프로파일러), 행당 유지 힙 크기는 setUp 에서 JOL 로 측정해서 출력한다
+@State(Scope.Benchmark)
+public class ColumnarPageBenchmark {
+
+    private static final int TEAMS = 30;
+
+    @Param({"100000"})
+    int dataSize;
+
+    @Param({"1000", "100000"})
+    int pageSize;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberSearchCondition condition;
+    Pageable pageable;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, dataSize, TEAMS);
+        memberRepository = context.getBean(MemberRepository.class);
+        condition = new MemberSearchCondition();
+        pageable = PageRequest.of(0, pageSize);
+
+        final Page<MemberTeamDto> dtoPage = memberRepository.searchPageComplex(condition, pageable);
+        final MemberColumnarPage columnarPage = memberRepository.searchColumnar(condition, pageable);
+        final int rows = dtoPage.getNumberOfElements();
+        System.out.printf("%n[heap/row] rows=%d dto=%d bytes columnar=%d bytes%n", rows,
+                GraphLayout.parseInstance(dtoPage.getContent()).totalSize() / rows,
+                GraphLayout.parseInstance(columnarPage).totalSize() / rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> dtoPage() {
+        return memberRepository.searchPageComplex(condition, pageable);
+    }
+
+    @Benchmark
+    public MemberColumnarPage columnarPage() {
+        return memberRepository.searchColumnar(condition, pageable);
+    }
+}
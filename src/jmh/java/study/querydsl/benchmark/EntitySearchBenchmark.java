@@ -0,0 +1,74 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+
+// 엔티티 조회 후 팀 이름까지 쓰는 경우 - 지연 로딩(배치 페치 크기별) vs 페치 조인
+// batchFetchSize=1 이면 팀 프록시마다 select 가 나가는 N+1 이다
+@State(Scope.Benchmark)
+public class EntitySearchBenchmark {
+
+    @Param({"10000"})
+    int dataSize;
+
+    // 팀당 회원 10명 - 지연 로딩 시 초기화할 팀 프록시 수
+    @Param({"1000"})
+    int teamCount;
+
+    @Param({"1", "100"})
+    int batchFetchSize;
+
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    TransactionTemplate readOnlyTx;
+    MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 2차 캐시가 팀을 들고 있으면 두 번째 반복부터 지연 로딩 비용이 사라지므로 끈다
+        context = BenchmarkContext.start(
+                "--member.batch-fetch-size=" + batchFetchSize,
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        BenchmarkContext.seed(context, dataSize, teamCount);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        readOnlyTx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTx.setReadOnly(true);
+        condition = new MemberSearchCondition();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void lazyTeam(Blackhole blackhole) {
+        readOnlyTx.executeWithoutResult(status -> consume(memberJpaRepository.searchMember(condition), blackhole));
+    }
+
+    @Benchmark
+    public void fetchJoinTeam(Blackhole blackhole) {
+        readOnlyTx.executeWithoutResult(status -> consume(memberJpaRepository.searchMemberFetchJoin(condition), blackhole));
+    }
+
+    private static void consume(List<Member> members, Blackhole blackhole) {
+        for (Member member : members) {
+            blackhole.consume(member.getTeam().getName());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+// 리포지토리 검색 경로 비교
+// search(모양별 컴파일 캐시) vs searchByBuilder(매번 Querydsl 로 생성), searchPageSimple vs searchPageComplex,
+// 깊은 페이지에서 offset 페이징(/v3) vs 키셋 페이징(/v4)
+@State(Scope.Benchmark)
+public class MemberSearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int TEAMS = 20;
+
+    @Param({"10000", "100000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    MemberRepository memberRepository;
+
+    MemberSearchCondition teamAgeCondition;
+    MemberSearchCondition emptyCondition;
+    Pageable firstPage;
+    Pageable deepPage;
+    Long deepPageCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, dataSize, TEAMS);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        teamAgeCondition = new MemberSearchCondition();
+        teamAgeCondition.setTeamName("team3");
+        teamAgeCondition.setAgeGoe(20);
+        teamAgeCondition.setAgeLoe(60);
+
+        emptyCondition = new MemberSearchCondition();
+        firstPage = PageRequest.of(0, PAGE_SIZE);
+        // 전체의 90% 지점 페이지 - member_id 가 1부터 연속이므로 같은 위치의 커서는 offset 과 같다
+        deepPage = PageRequest.of(dataSize * 9 / 10 / PAGE_SIZE, PAGE_SIZE);
+        deepPageCursor = deepPage.getOffset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(teamAgeCondition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(teamAgeCondition);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(teamAgeCondition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(teamAgeCondition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> deepPageOffset() {
+        return memberRepository.searchPageComplex(emptyCondition, deepPage);
+    }
+
+    @Benchmark
+    public MemberCursorPage deepPageKeyset() {
+        return memberRepository.searchAfter(emptyCondition, deepPageCursor, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberPartitionedRepository;
+
+import java.util.List;
+import java.util.Map;
+
+// 구간 수(1/2/4/8)에 따른 대용량 조회/집계 확장성
+@State(Scope.Benchmark)
+public class PartitionedScanBenchmark {
+
+    @Param({"500000"})
+    int dataSize;
+
+    @Param({"1", "2", "4", "8"})
+    int partitions;
+
+    ConfigurableApplicationContext context;
+    MemberPartitionedRepository memberPartitionedRepository;
+    MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--member.partition.pool-size=8",
+                "--spring.datasource.hikari.maximum-pool-size=10");
+        BenchmarkContext.seed(context, dataSize, 20);
+        memberPartitionedRepository = context.getBean(MemberPartitionedRepository.class);
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> export() {
+        return memberPartitionedRepository.search(condition, partitions);
+    }
+
+    @Benchmark
+    public Map<String, Double> averageAgeByTeam() {
+        return memberPartitionedRepository.averageAgeByTeam(condition, partitions);
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+// /v3/members?teamName=team3 경로 - 팀명 조건을 team.name 조인으로 거르는 기존 쿼리 vs 팀 디렉터리로 team_id 에 거는 쿼리
+// 변경 전 쿼리는 비교용으로 여기서 JPQL 로 직접 실행한다
+@State(Scope.Benchmark)
+public class TeamNameFilterBenchmark {
+
+    private static final int TEAMS = 20;
+    private static final String JOIN_CONTENT = "select new study.querydsl.dto.MemberTeamDto(m.id, m.username, m.age, t.id, t.name)" +
+            " from Member m left join m.team t where t.name = :teamName";
+    private static final String JOIN_COUNT = "select count(m.id) from Member m left join m.team t where t.name = :teamName";
+
+    @Param({"100000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    EntityManager em;
+    TransactionTemplate readOnlyTx;
+    MemberSearchCondition condition;
+    Pageable page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, dataSize, TEAMS);
+        memberRepository = context.getBean(MemberRepository.class);
+        em = context.getBean(EntityManager.class);
+        readOnlyTx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTx.setReadOnly(true);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        // 가득 찬 첫 페이지라 count 쿼리까지 실행된다
+        page = PageRequest.of(0, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> teamIdFromDirectory() {
+        return memberRepository.searchPageComplex(condition, page);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> joinOnTeamName() {
+        return readOnlyTx.execute(status -> {
+            final List<MemberTeamDto> content = em.createQuery(JOIN_CONTENT, MemberTeamDto.class)
+                    .setParameter("teamName", condition.getTeamName())
+                    .setFirstResult((int) page.getOffset())
+                    .setMaxResults(page.getPageSize())
+                    .getResultList();
+            final Long total = em.createQuery(JOIN_COUNT, Long.class)
+                    .setParameter("teamName", condition.getTeamName())
+                    .getSingleResult();
+            return new PageImpl<>(content, page, total);
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.UsernameIndex;
+
+import java.util.List;
+
+// 회원명 앞부분/부분 문자열 검색 - 회원명 인덱스 후보(member.id in) vs SQL like 만으로 찾기
+// 회원명은 member1 ~ member{dataSize}, 두 검색어 모두 결과는 수십 건 이하다
+// PREFIX 는 like 'member12345%' 도 username 인덱스 범위 검색이 되지만 CONTAINS 는 like '%12345%' 라서 전체를 훑는다
+@State(Scope.Benchmark)
+public class UsernameSearchBenchmark {
+
+    @Param({"1000000"})
+    int dataSize;
+
+    @Param({"PREFIX:member12345", "CONTAINS:12345"})
+    String query;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberJpaRepository memberJpaRepository;
+    MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, dataSize, 100);
+        memberRepository = context.getBean(MemberRepository.class);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        context.getBean(UsernameIndex.class).rebuild();
+
+        final String[] parts = query.split(":", 2);
+        condition = new MemberSearchCondition();
+        condition.setUserNameMatch(UsernameMatch.valueOf(parts[0]));
+        condition.setUserName(parts[1]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> usernameIndex() {
+        return memberRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> sqlLike() {
+        return memberJpaRepository.search(condition);
+    }
+}
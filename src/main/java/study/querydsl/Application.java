@@ -2,7 +2,10 @@ package study.querydsl;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+// TeamStatistics 주기 reconcile
+@EnableScheduling
 @SpringBootApplication
 public class Application {
 
@@ -0,0 +1,27 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AsyncConfig {
+
+    // 회원 검색 전용 스레드풀 - 커넥션 풀보다 많은 스레드는 어차피 커넥션을 기다리기만 하므로 풀 크기에 맞춘다
+    // 큐가 가득 차면 AbortPolicy 로 바로 거절해서 컨트롤러가 503 을 돌려주게 한다
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor memberSearchExecutor(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+            @Value("${member.async.queue-capacity:50}") int queueCapacity) {
+        final AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(connectionPoolSize, connectionPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "member-search-" + sequence.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
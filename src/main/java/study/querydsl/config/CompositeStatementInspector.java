@@ -0,0 +1,24 @@
+package study.querydsl.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+
+// 하이버네이트는 StatementInspector 를 하나만 받으므로 여러 개를 순서대로 적용한다
+public class CompositeStatementInspector implements StatementInspector {
+
+    private final List<StatementInspector> inspectors;
+
+    public CompositeStatementInspector(List<StatementInspector> inspectors) {
+        this.inspectors = List.copyOf(inspectors);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String inspected = sql;
+        for (StatementInspector inspector : inspectors) {
+            inspected = inspector.inspect(inspected);
+        }
+        return inspected;
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.controller.MemberResponseCache;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.MemberWriteStatementInspector;
+import study.querydsl.repository.TeamDirectory;
+
+import java.util.List;
+
+@Configuration
+public class HibernateConfig {
+
+    // StatementInspector 를 클래스명이 아닌 빈 인스턴스로 등록해야 스프링 빈(count 캐시)을 주입받을 수 있다
+    // 하나만 등록할 수 있으므로 캐시 무효화와 SQL 카운터를 묶어서 등록한다
+    // TeamDirectory 는 EntityManager 를 쓰므로 EntityManagerFactory 생성 이후에 꺼낸다 (순환 참조 방지)
+    // 응답 캐시는 엔티티 이벤트로도 비워지지만 벌크 연산은 이벤트가 없으므로 여기서도 비운다
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(MemberCountCache countCache,
+                                                                     ObjectProvider<TeamDirectory> teamDirectory,
+                                                                     ObjectProvider<MemberResponseCache> responseCache) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new CompositeStatementInspector(List.of(
+                        new MemberWriteStatementInspector(countCache, table -> {
+                            if ("team".equals(table)) {
+                                teamDirectory.ifAvailable(TeamDirectory::invalidate);
+                            }
+                            responseCache.ifAvailable(MemberResponseCache::invalidateAll);
+                        }),
+                        new StatementCountingInspector())));
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.config;
+
+// 레플리카가 프라이머리보다 얼마나 뒤처져 있는지(ms) 알려준다
+// 알 수 없으면 0 을 돌려준다 (운영에서는 복제 지연 모니터링 값을, 테스트에서는 테스트 복제기가 구현)
+@FunctionalInterface
+public interface ReplicaLagProbe {
+
+    ReplicaLagProbe NONE = replicaName -> 0L;
+
+    long lagMillis(String replicaName);
+}
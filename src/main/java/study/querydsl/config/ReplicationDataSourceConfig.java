@@ -0,0 +1,65 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// app.datasource.routing.enabled=true 일 때만 spring.datasource 를 프라이머리로, replicas 를 읽기 전용 풀로 구성한다
+@Configuration
+@EnableConfigurationProperties(ReplicationProperties.class)
+@ConditionalOnProperty(prefix = "app.datasource.routing", name = "enabled", havingValue = "true")
+public class ReplicationDataSourceConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties,
+                                 ReplicationProperties replicationProperties,
+                                 ObjectProvider<ReplicaLagProbe> lagProbe,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        final HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+        bindMetrics(primary, meterRegistry);
+
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (ReplicationProperties.Replica replica : replicationProperties.getReplicas()) {
+            final HikariDataSource replicaDataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.getDriverClassName())
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .build();
+            replicaDataSource.setPoolName(replica.getName());
+            bindMetrics(replicaDataSource, meterRegistry);
+            replicas.put(replica.getName(), replicaDataSource);
+        }
+
+        final ReplicationRoutingDataSource routingDataSource = new ReplicationRoutingDataSource(
+                primary, replicas, lagProbe.getIfAvailable(() -> ReplicaLagProbe.NONE),
+                replicationProperties.getMaxLagMillis(), replicationProperties.getStickyMillis());
+        routingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    // 라우팅 안쪽 풀은 빈이 아니라서 부트가 hikaricp.* 메트릭(커넥션 획득 시간 등)을 붙여주지 않으므로 직접 붙인다
+    private static void bindMetrics(HikariDataSource dataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        meterRegistry.ifAvailable(registry ->
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+}
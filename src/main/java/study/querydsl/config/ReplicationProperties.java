@@ -0,0 +1,28 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class ReplicationProperties {
+
+    private boolean enabled;
+    // 이 값보다 뒤처진 레플리카로는 읽기를 보내지 않는다
+    private long maxLagMillis = 1000;
+    // 쓰기 후 이 시간 동안은 같은 스레드의 읽기를 프라이머리로 보낸다
+    private long stickyMillis = 1000;
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+    }
+}
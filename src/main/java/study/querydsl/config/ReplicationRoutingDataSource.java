@@ -0,0 +1,85 @@
+package study.querydsl.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// @Transactional(readOnly = true) 이면 레플리카로, 그 외(쓰기, 트랜잭션 없음)는 프라이머리로 보낸다
+// - 복제 지연이 maxLagMillis 를 넘은 레플리카는 건너뛰고, 쓸 수 있는 레플리카가 없으면 프라이머리로 읽는다
+// - 쓰기 직후 stickyMillis 동안은 같은 스레드의 읽기도 프라이머리로 보낸다 (read-your-writes)
+// 트랜잭션 시작 시점에는 readOnly 여부가 아직 동기화되지 않으므로 LazyConnectionDataSourceProxy 로 감싸서 써야 한다
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Long> LAST_WRITE_AT = new ThreadLocal<>();
+
+    private final List<String> replicaNames;
+    private final ReplicaLagProbe lagProbe;
+    private final long maxLagMillis;
+    private final long stickyMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicationRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                        ReplicaLagProbe lagProbe, long maxLagMillis, long stickyMillis) {
+        final Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.replicaNames = new ArrayList<>(replicas.keySet());
+        this.lagProbe = lagProbe;
+        this.maxLagMillis = maxLagMillis;
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            markWrite();
+            return PRIMARY;
+        }
+        if (isSticky()) {
+            return PRIMARY;
+        }
+        return selectReplica();
+    }
+
+    public static void markWrite() {
+        LAST_WRITE_AT.set(System.currentTimeMillis());
+    }
+
+    public static void clearStickiness() {
+        LAST_WRITE_AT.remove();
+    }
+
+    private boolean isSticky() {
+        final Long lastWriteAt = LAST_WRITE_AT.get();
+        if (lastWriteAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWriteAt < stickyMillis) {
+            return true;
+        }
+        LAST_WRITE_AT.remove();
+        return false;
+    }
+
+    // 라운드 로빈으로 돌면서 지연 허용치 안에 있는 첫 레플리카를 고른다
+    private String selectReplica() {
+        final int size = replicaNames.size();
+        final int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            final String candidate = replicaNames.get((start + i) % size);
+            if (lagProbe.lagMillis(candidate) <= maxLagMillis) {
+                return candidate;
+            }
+        }
+        return PRIMARY;
+    }
+}
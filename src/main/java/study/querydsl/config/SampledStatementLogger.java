@@ -0,0 +1,162 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// org.hibernate.SQL/type 로그 대신 쓰는 SQL 로거 - 전체 문장 중 sample-rate 만큼과 slow-threshold-millis 이상 걸린 문장만 남긴다
+// 느린 문장은 바인드 값, 조건 모양과 함께 최근 slow-buffer-size 개를 링 버퍼에 보관하고 /admin/slow-queries 로 보여준다
+// 샘플도 아니고 느리지도 않은 문장은 실행 시간 비교 한 번으로 끝난다 (SQL 정규화, 바인드 값 문자열 변환은 남길 때만 한다)
+@Slf4j
+@Component
+public class SampledStatementLogger implements QueryExecutionListener {
+
+    private static final int MAX_BIND_LENGTH = 100;
+    private static final int MAX_BATCH_ROWS = 10;
+    private static final Pattern PREDICATE = Pattern.compile(" where (.*?)(?: group by | order by | limit | offset | fetch first |$)");
+
+    private final double sampleRate;
+    private final long slowThresholdMillis;
+
+    // 쓰는 쪽은 순번을 하나 받아서 해당 칸을 덮어쓰기만 한다 - 락 없이 가장 오래된 항목이 밀려난다
+    private final AtomicReferenceArray<SlowQuery> slowQueries;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    public SampledStatementLogger(@Value("${app.sql-log.sample-rate:0.01}") double sampleRate,
+                                  @Value("${app.sql-log.slow-threshold-millis:100}") long slowThresholdMillis,
+                                  @Value("${app.sql-log.slow-buffer-size:100}") int slowBufferSize) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.slowQueries = new AtomicReferenceArray<>(slowBufferSize);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        final long elapsed = execInfo.getElapsedTime();
+        final boolean isSlow = elapsed >= slowThresholdMillis;
+        final boolean isSampled = !isSlow && sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (!isSlow && !isSampled) {
+            return;
+        }
+
+        for (QueryInfo queryInfo : queryInfoList) {
+            final String sql = queryInfo.getQuery();
+            final List<List<String>> binds = bindsOf(queryInfo);
+            if (isSlow) {
+                slow.increment();
+                final String shape = predicateShape(sql);
+                log.warn("[slow {}ms] {} binds={} shape={}", elapsed, sql, binds, shape);
+                add(new SlowQuery(sequence.getAndIncrement(), System.currentTimeMillis(), elapsed,
+                        execInfo.getDataSourceName(), sql, shape, binds, execInfo.isBatch() ? execInfo.getBatchSize() : 0));
+            } else {
+                sampled.increment();
+                log.info("[sampled {}ms] {} binds={}", elapsed, sql, binds);
+            }
+        }
+    }
+
+    // 최근 것부터
+    public List<SlowQuery> getSlowQueries() {
+        final List<SlowQuery> recent = new ArrayList<>(slowQueries.length());
+        for (int i = 0; i < slowQueries.length(); i++) {
+            final SlowQuery slowQuery = slowQueries.get(i);
+            if (slowQuery != null) {
+                recent.add(slowQuery);
+            }
+        }
+        recent.sort(Comparator.comparingLong(SlowQuery::getSequence).reversed());
+        return recent;
+    }
+
+    public long getSampledCount() {
+        return sampled.sum();
+    }
+
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    private void add(SlowQuery slowQuery) {
+        if (slowQueries.length() > 0) {
+            slowQueries.set((int) (slowQuery.getSequence() % slowQueries.length()), slowQuery);
+        }
+    }
+
+    // 리터럴과 in 절 길이를 지운 where 절 - 같은 검색 조건 조합이면 같은 값
+    static String predicateShape(String sql) {
+        final Matcher matcher = PREDICATE.matcher(StatementCounter.normalize(sql));
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    // 배치면 행마다 한 줄, 너무 긴 값과 너무 많은 행은 자른다
+    private static List<List<String>> bindsOf(QueryInfo queryInfo) {
+        final List<List<ParameterSetOperation>> parametersList = queryInfo.getParametersList();
+        final List<List<String>> binds = new ArrayList<>(Math.min(parametersList.size(), MAX_BATCH_ROWS));
+        for (List<ParameterSetOperation> parameters : parametersList) {
+            if (binds.size() == MAX_BATCH_ROWS) {
+                break;
+            }
+            final List<String> row = new ArrayList<>(parameters.size());
+            for (ParameterSetOperation parameter : parameters) {
+                row.add(bindValueOf(parameter));
+            }
+            binds.add(row);
+        }
+        return binds;
+    }
+
+    private static String bindValueOf(ParameterSetOperation parameter) {
+        final Object[] args = parameter.getArgs();
+        if ("setNull".equals(parameter.getMethod().getName()) || args.length < 2 || args[1] == null) {
+            return "null";
+        }
+        final String value = String.valueOf(args[1]);
+        return value.length() > MAX_BIND_LENGTH ? value.substring(0, MAX_BIND_LENGTH) + "..." : value;
+    }
+
+    @Getter
+    public static final class SlowQuery {
+        private final long sequence;
+        private final long timestamp;
+        private final long elapsedMillis;
+        private final String dataSource;
+        private final String sql;
+        private final String shape;
+        private final List<List<String>> binds;
+        private final int batchSize;
+
+        private SlowQuery(long sequence, long timestamp, long elapsedMillis, String dataSource,
+                          String sql, String shape, List<List<String>> binds, int batchSize) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.elapsedMillis = elapsedMillis;
+            this.dataSource = dataSource;
+            this.sql = sql;
+            this.shape = shape;
+            this.binds = binds;
+            this.batchSize = batchSize;
+        }
+    }
+}
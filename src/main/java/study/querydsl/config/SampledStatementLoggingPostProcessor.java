@@ -0,0 +1,35 @@
+package study.querydsl.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// DataSource 빈을 datasource-proxy 로 감싸서 실행된 SQL 마다 SampledStatementLogger 를 부른다
+// 라우팅을 켜면 라우팅 DataSource 바깥을 감싸므로 프라이머리/레플리카 구분 없이 한 곳에서 본다
+@Component
+@ConditionalOnProperty(prefix = "app.sql-log", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SampledStatementLoggingPostProcessor implements BeanPostProcessor {
+
+    // 후처리기는 일반 빈보다 먼저 만들어지므로 로거는 DataSource 를 감쌀 때 꺼낸다
+    private final ObjectProvider<SampledStatementLogger> logger;
+
+    public SampledStatementLoggingPostProcessor(ObjectProvider<SampledStatementLogger> logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof ProxyDataSource) {
+            return bean;
+        }
+        return ProxyDataSourceBuilder.create((DataSource) bean)
+                .name(beanName)
+                .listener(logger.getObject())
+                .build();
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// HTTP 요청 하나를 StatementCounter 범위로 잡아서 요청당 SQL 수를 세고 N+1 을 경고한다
+// 비동기 컨트롤러(/async/**)의 쿼리는 다른 스레드에서 실행되므로 여기서는 세지 않는다
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.statement-count", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private final int repeatThreshold;
+
+    public StatementCountFilter(@Value("${app.statement-count.repeat-threshold:3}") int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final String name = request.getMethod() + " " + request.getRequestURI();
+        try (StatementCounter.Scope scope = StatementCounter.open(name, repeatThreshold)) {
+            filterChain.doFilter(request, response);
+            log.debug("[{}] statements={} selects={} repeated={}",
+                    name, scope.getTotal(), scope.getSelects(), scope.getRepeated());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// 스레드(HTTP 요청, 테스트 메서드) 단위로 실행된 SQL 을 센다
+// 파라미터만 다른 같은 문장이 반복되면 N+1 로 보고 처음 반복을 일으킨 호출 위치와 함께 경고한다
+@Slf4j
+public final class StatementCounter {
+
+    public static final int DEFAULT_REPEAT_THRESHOLD = 3;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern LEADING_COMMENT = Pattern.compile("^\\s*/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private StatementCounter() {
+    }
+
+    // 이미 열린 범위가 있으면 그 안에 중첩되고, 닫힐 때 건수를 바깥 범위에 더한다
+    public static Scope open(String name, int repeatThreshold) {
+        final Scope scope = new Scope(name, repeatThreshold, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static Optional<Scope> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    static void record(String sql) {
+        final Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.record(sql);
+        }
+    }
+
+    // 파라미터 값(리터럴)과 in 절 길이가 달라도 같은 문장으로 본다
+    static String normalize(String sql) {
+        String normalized = LEADING_COMMENT.matcher(sql).replaceFirst("");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase();
+    }
+
+    private static boolean isSelect(String normalizedSql) {
+        return normalizedSql.startsWith("select") || normalizedSql.startsWith("with");
+    }
+
+    // 카운터/하이버네이트/스프링 프록시를 건너뛴 첫 애플리케이션 코드 위치
+    private static String callSite() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("study.querydsl."))
+                .filter(frame -> !frame.getClassName().startsWith("study.querydsl.config.Statement"))
+                .filter(frame -> !frame.getClassName().startsWith("study.querydsl.config.CompositeStatementInspector"))
+                .filter(frame -> !frame.getClassName().contains("$$"))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final String name;
+        private final int repeatThreshold;
+        private final Scope parent;
+        private final Map<String, Repeat> statements = new LinkedHashMap<>();
+        private long total;
+        private long selects;
+
+        private Scope(String name, int repeatThreshold, Scope parent) {
+            this.name = name;
+            this.repeatThreshold = repeatThreshold;
+            this.parent = parent;
+        }
+
+        private void record(String sql) {
+            final String normalized = normalize(sql);
+            total++;
+            if (isSelect(normalized)) {
+                selects++;
+            }
+
+            final Repeat repeat = statements.computeIfAbsent(normalized, key -> new Repeat());
+            if (++repeat.count == repeatThreshold) {
+                repeat.callSite = callSite();
+                log.warn("N+1 의심 [{}] 같은 문장이 {}번 반복됨 at {}: {}", name, repeatThreshold, repeat.callSite, normalized);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSelects() {
+            return selects;
+        }
+
+        public long getWrites() {
+            return total - selects;
+        }
+
+        // 반복 기준을 넘긴 문장 - "호출 위치: 반복 횟수 x 문장"
+        public List<String> getRepeated() {
+            final List<String> repeated = new ArrayList<>();
+            statements.forEach((sql, repeat) -> {
+                if (repeat.count >= repeatThreshold) {
+                    repeated.add(repeat.callSite + ": " + repeat.count + " x " + sql);
+                }
+            });
+            return repeated;
+        }
+
+        @Override
+        public void close() {
+            if (parent != null) {
+                parent.total += total;
+                parent.selects += selects;
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    private static final class Repeat {
+        private int count;
+        private String callSite;
+    }
+}
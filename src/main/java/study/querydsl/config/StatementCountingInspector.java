@@ -0,0 +1,13 @@
+package study.querydsl.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// 하이버네이트가 실행하는 모든 SQL 을 현재 스레드의 StatementCounter 범위에 기록한다
+public class StatementCountingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        StatementCounter.record(sql);
+        return sql;
+    }
+}
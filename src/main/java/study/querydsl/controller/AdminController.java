@@ -0,0 +1,59 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.config.SampledStatementLogger;
+import study.querydsl.repository.ConcurrentCountExecutor;
+import study.querydsl.repository.MemberCountCache;
+import study.querydsl.repository.TeamStatistics;
+import study.querydsl.repository.UsernameIndex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final MemberCountCache memberCountCache;
+    private final ConcurrentCountExecutor concurrentCountExecutor;
+    private final MemberResponseCache memberResponseCache;
+    private final SampledStatementLogger sampledStatementLogger;
+    private final UsernameIndex usernameIndex;
+    private final TeamStatistics teamStatistics;
+
+    @GetMapping("/admin/count-cache")
+    public Map<String, Object> countCacheStats(){
+        return memberCountCache.getStats();
+    }
+
+    @GetMapping("/admin/concurrent-count")
+    public Map<String, Object> concurrentCountStats(){
+        return concurrentCountExecutor.getStats();
+    }
+
+    @GetMapping("/admin/response-cache")
+    public Map<String, Object> responseCacheStats(){
+        return memberResponseCache.getStats();
+    }
+
+    @GetMapping("/admin/username-index")
+    public Map<String, Object> usernameIndexStats(){
+        return usernameIndex.getStats();
+    }
+
+    @GetMapping("/admin/team-statistics")
+    public Map<String, Object> teamStatisticsStats(){
+        return teamStatistics.getStats();
+    }
+
+    @GetMapping("/admin/slow-queries")
+    public Map<String, Object> slowQueries(){
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("slowCount", sampledStatementLogger.getSlowCount());
+        result.put("sampledCount", sampledStatementLogger.getSampledCount());
+        result.put("recent", sampledStatementLogger.getSlowQueries());
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+// MemberController 의 v1~v3 검색을 전용 스레드풀에서 실행하는 비동기 버전
+// 톰캣 스레드는 DB 응답을 기다리지 않고 바로 반환되므로 /hello 같은 다른 요청이 굶지 않는다
+@RestController
+@RequiredArgsConstructor
+public class AsyncMemberController {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final ThreadPoolExecutor memberSearchExecutor;
+
+    @GetMapping("/async/v1/members")
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition){
+        return CompletableFuture.supplyAsync(() -> memberJpaRepository.search(condition), memberSearchExecutor);
+    }
+
+    @GetMapping("/async/v2/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
+        return CompletableFuture.supplyAsync(() -> memberRepository.searchPageSimple(condition, pageable), memberSearchExecutor);
+    }
+
+    @GetMapping("/async/v3/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
+        return CompletableFuture.supplyAsync(() -> memberRepository.searchPageComplex(condition, pageable), memberSearchExecutor);
+    }
+
+    // 큐가 가득 차면 기다리게 하지 않고 바로 503
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> rejected(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("member search is saturated");
+    }
+}
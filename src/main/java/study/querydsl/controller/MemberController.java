@@ -1,16 +1,35 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.MemberColumnarPage;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberImportResult;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.ConcurrentCountExecutor;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,20 +37,109 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentCountExecutor concurrentCountExecutor;
+    private final MemberResponseCache responseCache;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
         return memberJpaRepository.search(condition);
     }
 
+    // 검색 결과 전체를 메모리에 올리지 않고 스트리밍으로 내려준다
+    @GetMapping("/v1/members/export")
+    public void exportMembers(MemberSearchCondition condition,
+                              @RequestParam(defaultValue = "ndjson") String format,
+                              @RequestParam(defaultValue = "500") int fetchSize,
+                              HttpServletResponse response) throws IOException {
+        final MemberExportWriter.Format exportFormat = parseFormat(format);
+        final int chunkSize = Math.max(1, Math.min(fetchSize, 10_000));
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        final BufferedWriter out = new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        final MemberExportWriter writer = new MemberExportWriter(out, exportFormat, objectMapper, chunkSize);
+        writer.writeHeader();
+        memberJpaRepository.export(condition, chunkSize, chunkSize, writer);
+        writer.flush();
+    }
+
+    // 요청 본문을 스트리밍으로 읽으면서 배치 insert 한다
+    // 중간에 실패하면 앞 배치까지는 커밋된 채로 400 과 함께 적재되지 않은 첫 행의 위치를 돌려준다
+    @PostMapping("/v1/members/import")
+    public ResponseEntity<MemberImportResult> importMembers(@RequestParam(defaultValue = "ndjson") String format,
+                                                            @RequestParam(defaultValue = "1000") int batchSize,
+                                                            HttpServletRequest request) throws IOException {
+        final MemberExportWriter.Format importFormat = parseFormat(format);
+        final BufferedReader in = new BufferedReader(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        final MemberImportResult result = memberJpaRepository.importMembers(
+                new MemberImportReader(in, importFormat, objectMapper),
+                Math.max(1, Math.min(batchSize, 10_000)));
+        return ResponseEntity.status(result.isFailed() ? HttpStatus.BAD_REQUEST : HttpStatus.OK).body(result);
+    }
+
+    // 응답 캐시에 직렬화된 JSON 이 있으면 조회/직렬화 없이 그대로 내려준다
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
-        return memberRepository.searchPageSimple(condition, pageable);
+    public void searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                               HttpServletResponse response) throws IOException {
+        responseCache.serve("v2", condition, pageable, response,
+                () -> memberRepository.searchPageSimple(condition, pageable));
     }
 
+    // count 를 어떻게 구하든 응답은 같으므로 concurrentCount 옵션은 캐시 키에 넣지 않는다
+    // estimateTotal 은 전체 건수가 추정값(exact=false)일 수 있어서 응답이 달라지므로 countLimit 과 함께 캐시 키에 넣는다
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
+    public void searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                               @RequestParam(defaultValue = "false") boolean concurrentCount,
+                               @RequestParam(required = false) Long countTimeoutMillis,
+                               @RequestParam(defaultValue = "false") boolean estimateTotal,
+                               @RequestParam(defaultValue = "10000") int countLimit,
+                               HttpServletResponse response) throws IOException {
+        if (estimateTotal) {
+            final int limit = Math.max(1, Math.min(countLimit, 100_000));
+            responseCache.serve("v3:estimated:" + limit, condition, pageable, response,
+                    () -> memberRepository.searchPageEstimated(condition, pageable, limit));
+            return;
+        }
+        responseCache.serve("v3", condition, pageable, response, () -> searchPageV3(
+                condition, pageable, concurrentCount, countTimeoutMillis));
+    }
+
+    private Page<MemberTeamDto> searchPageV3(MemberSearchCondition condition, Pageable pageable,
+                                             boolean concurrentCount, Long countTimeoutMillis){
+        if (concurrentCount) {
+            return memberRepository.searchPageConcurrent(condition, pageable,
+                    countTimeoutMillis != null ? countTimeoutMillis : concurrentCountExecutor.getDefaultTimeoutMillis());
+        }
         return memberRepository.searchPageComplex(condition, pageable);
     }
 
+    @GetMapping("/v3/members/columnar")
+    public MemberColumnarPage searchMemberV3Columnar(MemberSearchCondition condition, Pageable pageable){
+        return memberRepository.searchColumnar(condition, pageable);
+    }
+
+    @GetMapping("/v4/members")
+    public MemberCursorPage searchMemberV4(MemberSearchCondition condition,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "20") int size){
+        final Long lastMemberId;
+        try {
+            lastMemberId = MemberCursorPage.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return memberRepository.searchAfter(condition, lastMemberId, Math.max(1, Math.min(size, 2000)));
+    }
+
+    private static MemberExportWriter.Format parseFormat(String format) {
+        try {
+            return MemberExportWriter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "지원하지 않는 형식입니다: " + format, e);
+        }
+    }
 }
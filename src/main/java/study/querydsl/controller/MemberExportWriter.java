@@ -0,0 +1,103 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+// 회원 검색 결과를 한 줄씩 응답 스트림에 쓴다 (NDJSON / CSV)
+// flushInterval 건마다 flush 해서 응답 버퍼가 결과 전체를 들고 있지 않도록 한다
+class MemberExportWriter implements Consumer<MemberTeamDto> {
+
+    enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final Writer writer;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private final int flushInterval;
+    private long written;
+
+    MemberExportWriter(Writer writer, Format format, ObjectMapper objectMapper, int flushInterval) {
+        this.writer = writer;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.flushInterval = flushInterval;
+    }
+
+    void writeHeader() {
+        if (format == Format.CSV) {
+            write("memberId,username,age,teamId,teamName\n");
+        }
+    }
+
+    @Override
+    public void accept(MemberTeamDto dto) {
+        if (format == Format.CSV) {
+            write(toCsv(dto));
+        } else {
+            try {
+                write(objectMapper.writeValueAsString(dto));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            write("\n");
+        }
+        if (++written % flushInterval == 0) {
+            flush();
+        }
+    }
+
+    void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String value) {
+        try {
+            writer.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(MemberTeamDto dto) {
+        return nullToEmpty(dto.getMemberId()) + ','
+                + escape(dto.getUsername()) + ','
+                + dto.getAge() + ','
+                + nullToEmpty(dto.getTeamId()) + ','
+                + escape(dto.getTeamName()) + '\n';
+    }
+
+    private static String nullToEmpty(Long value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
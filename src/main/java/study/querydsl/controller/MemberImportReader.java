@@ -0,0 +1,110 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import study.querydsl.dto.MemberImportException;
+import study.querydsl.dto.MemberImportRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// 업로드된 NDJSON / CSV 를 한 줄씩 읽어서 넘겨준다 - 파일 전체를 메모리에 올리지 않는다
+// CSV 는 username,age,teamName 순서 (첫 줄이 username 으로 시작하면 헤더로 보고 건너뛴다)
+class MemberImportReader implements Iterator<MemberImportRow> {
+
+    private final BufferedReader reader;
+    private final MemberExportWriter.Format format;
+    private final ObjectMapper objectMapper;
+    private long lineNumber;
+    private String nextLine;
+
+    MemberImportReader(BufferedReader reader, MemberExportWriter.Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.nextLine = readNonEmptyLine();
+        if (format == MemberExportWriter.Format.CSV && nextLine != null && nextLine.startsWith("username")) {
+            this.nextLine = readNonEmptyLine();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextLine != null;
+    }
+
+    @Override
+    public MemberImportRow next() {
+        if (nextLine == null) {
+            throw new NoSuchElementException();
+        }
+        final String line = nextLine;
+        final long currentLine = lineNumber;
+        nextLine = readNonEmptyLine();
+        final MemberImportRow row;
+        try {
+            row = format == MemberExportWriter.Format.CSV
+                    ? parseCsv(line)
+                    : objectMapper.readValue(line, MemberImportRow.class);
+        } catch (IOException | RuntimeException e) {
+            throw new MemberImportException(currentLine, currentLine + "번째 줄을 읽을 수 없습니다: " + line, e);
+        }
+        row.setLine(currentLine);
+        return row;
+    }
+
+    private String readNonEmptyLine() {
+        try {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+            } while (line != null && line.isBlank());
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MemberImportRow parseCsv(String line) {
+        final List<String> columns = splitCsv(line);
+        if (columns.size() < 2) {
+            throw new IllegalArgumentException("컬럼 수가 부족합니다");
+        }
+        final String teamName = columns.size() > 2 ? columns.get(2) : null;
+        return new MemberImportRow(columns.get(0), Integer.parseInt(columns.get(1).trim()), teamName);
+    }
+
+    // MemberExportWriter 의 escape 규칙("" 로 감싸고 " 는 "" 로)과 짝을 맞춘다
+    private static List<String> splitCsv(String line) {
+        final List<String> columns = new ArrayList<>(3);
+        final StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+}
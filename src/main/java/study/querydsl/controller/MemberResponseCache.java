@@ -0,0 +1,257 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// 자주 들어오는 검색 페이지(/v2, /v3)의 JSON 응답을 직렬화된 바이트 그대로 힙 밖(direct ByteBuffer)에 보관한다
+// 히트하면 JPA 조회와 Jackson 직렬화 없이 바이트를 그대로 응답에 쓴다
+// 메모리는 시작할 때 capacity-bytes 만큼 한 번에 잡고 block-size 단위 블록으로 나눠 쓴다 - 넘치면 LRU 로 내보낸다
+// Member/Team 변경(엔티티 이벤트, 벌크 SQL)이 있으면 전부 비운다
+@Component
+public class MemberResponseCache {
+
+    public static final String CACHE_HEADER = "X-Response-Cache";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int blockSize;
+    private final int maxEntryBytes;
+    private final int maxPageNumber;
+
+    private final ByteBuffer arena;
+    private final int[] freeBlocks;
+    private int freeCount;
+    // 접근 순서 LinkedHashMap - 맨 앞이 가장 오래 안 쓴 항목, this 로 동기화한다
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // invalidateAll() 이전에 시작된 조회 결과가 다시 캐시에 들어가지 않도록 세대 번호로 구분한다
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MemberResponseCache(ObjectMapper objectMapper,
+                               @Value("${member.response-cache.enabled:true}") boolean enabled,
+                               @Value("${member.response-cache.capacity-bytes:16777216}") int capacityBytes,
+                               @Value("${member.response-cache.block-size:4096}") int blockSize,
+                               @Value("${member.response-cache.max-entry-bytes:1048576}") int maxEntryBytes,
+                               @Value("${member.response-cache.max-page-number:4}") int maxPageNumber) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.blockSize = blockSize;
+        this.maxEntryBytes = Math.min(maxEntryBytes, capacityBytes);
+        this.maxPageNumber = maxPageNumber;
+
+        final int blocks = enabled ? capacityBytes / blockSize : 0;
+        this.arena = ByteBuffer.allocateDirect(blocks * blockSize);
+        this.freeBlocks = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            freeBlocks[i] = blocks - 1 - i;
+        }
+        this.freeCount = blocks;
+    }
+
+    // 검색 조건 + 페이지로 캐시를 찾고, 없으면 body 로 조회/직렬화해서 담은 뒤 응답한다
+    // 앞쪽 몇 페이지만 담는다 - 깊은 페이지는 재사용이 드물어서 인기 페이지를 밀어내기만 한다
+    public void serve(String endpoint, MemberSearchCondition condition, Pageable pageable,
+                      HttpServletResponse response, Supplier<?> body) throws IOException {
+        if (!enabled || pageable.getPageNumber() > maxPageNumber) {
+            bypasses.increment();
+            write(response, objectMapper.writeValueAsBytes(body.get()), "BYPASS");
+            return;
+        }
+
+        final List<Object> key = keyOf(endpoint, condition, pageable);
+        final Entry entry = acquire(key);
+        if (entry != null) {
+            try {
+                write(response, entry);
+            } finally {
+                release(entry);
+            }
+            return;
+        }
+
+        misses.increment();
+        final long loadGeneration = generation.get();
+        final byte[] json = objectMapper.writeValueAsBytes(body.get());
+        store(key, json, loadGeneration);
+        write(response, json, "MISS");
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            for (Entry entry : entries.values()) {
+                remove(entry);
+            }
+            entries.clear();
+        }
+        invalidations.increment();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isFor(Member.class) || event.isFor(Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("usedBytes", (long) (freeBlocks.length - freeCount) * blockSize);
+        }
+        stats.put("capacityBytes", arena.capacity());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("bypasses", bypasses.sum());
+        stats.put("stores", stores.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    // 빈 문자열 조건은 null 로 맞춰서 같은 검색이 같은 키가 되도록 한다
+    static List<Object> keyOf(String endpoint, MemberSearchCondition condition, Pageable pageable) {
+        final MemberSearchCondition normalized = condition.normalized();
+        return Arrays.asList(endpoint, normalized.getUserName(), normalized.getUserNameMatch(), normalized.getTeamName(),
+                normalized.getAgeGoe(), normalized.getAgeLoe(),
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString());
+    }
+
+    private synchronized Entry acquire(List<Object> key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.readers++;
+        hits.increment();
+        return entry;
+    }
+
+    private synchronized void release(Entry entry) {
+        if (--entry.readers == 0 && entry.removed) {
+            freeBlocks(entry);
+        }
+    }
+
+    private void store(List<Object> key, byte[] json, long loadGeneration) {
+        if (json.length > maxEntryBytes) {
+            rejected.increment();
+            return;
+        }
+        final int needed = (json.length + blockSize - 1) / blockSize;
+
+        synchronized (this) {
+            if (generation.get() != loadGeneration || entries.containsKey(key)) {
+                return;
+            }
+            final Iterator<Entry> eldest = entries.values().iterator();
+            while (freeCount < needed && eldest.hasNext()) {
+                final Entry evicted = eldest.next();
+                eldest.remove();
+                remove(evicted);
+                evictions.increment();
+            }
+            // 응답 중인 항목의 블록은 다 읽을 때까지 돌려받지 못하므로 그래도 모자라면 담지 않는다
+            if (freeCount < needed) {
+                rejected.increment();
+                return;
+            }
+
+            final int[] blocks = new int[needed];
+            for (int i = 0; i < needed; i++) {
+                blocks[i] = freeBlocks[--freeCount];
+                final int offset = i * blockSize;
+                final ByteBuffer block = arena.duplicate();
+                block.position(blocks[i] * blockSize);
+                block.put(json, offset, Math.min(blockSize, json.length - offset));
+            }
+            entries.put(key, new Entry(blocks, json.length));
+        }
+        stores.increment();
+    }
+
+    // 캐시에서 빠진 항목 - 읽는 중이면 블록 반환을 release() 까지 미룬다
+    private void remove(Entry entry) {
+        entry.removed = true;
+        if (entry.readers == 0) {
+            freeBlocks(entry);
+        }
+    }
+
+    private void freeBlocks(Entry entry) {
+        for (int block : entry.blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private void write(HttpServletResponse response, Entry entry) throws IOException {
+        prepare(response, entry.length, "HIT");
+        final WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        int remaining = entry.length;
+        for (int block : entry.blocks) {
+            final ByteBuffer slice = arena.duplicate();
+            slice.position(block * blockSize);
+            slice.limit(block * blockSize + Math.min(blockSize, remaining));
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+            remaining -= blockSize;
+        }
+        response.flushBuffer();
+    }
+
+    private void write(HttpServletResponse response, byte[] json, String cacheStatus) throws IOException {
+        prepare(response, json.length, cacheStatus);
+        response.getOutputStream().write(json);
+        response.flushBuffer();
+    }
+
+    private static void prepare(HttpServletResponse response, int length, String cacheStatus) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(length);
+        response.setHeader(CACHE_HEADER, cacheStatus);
+    }
+
+    private static final class Entry {
+        private final int[] blocks;
+        private final int length;
+        private int readers;
+        private boolean removed;
+
+        private Entry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+}
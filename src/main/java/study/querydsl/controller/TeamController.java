@@ -0,0 +1,22 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamStatistics;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamStatistics teamStatistics;
+
+    // 증분 집계 값을 그대로 내려준다 - SQL 없음
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats(){
+        return teamStatistics.getTeamStats();
+    }
+}
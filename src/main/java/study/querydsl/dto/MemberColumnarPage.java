@@ -0,0 +1,97 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 행마다 MemberTeamDto 를 만드는 대신 컬럼별 기본형 배열로 담는 페이지
+// 팀명/회원명은 페이지 단위 사전(dictionary)에 한 번씩만 담고 행에는 사전 인덱스만 둔다
+// teamOrdinals 가 -1 이면 팀이 없는 회원
+@Getter
+public class MemberColumnarPage {
+
+    private final int page;
+    private final int size;
+    private final long totalElements;
+    private final int rowCount;
+
+    private final long[] memberIds;
+    private final int[] ages;
+    private final int[] usernameOrdinals;
+    private final int[] teamOrdinals;
+
+    private final List<String> usernames;
+    private final long[] teamIds;
+    private final List<String> teamNames;
+
+    private MemberColumnarPage(Builder builder, int page, int size, long totalElements) {
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.rowCount = builder.rowCount;
+        // 마지막 페이지처럼 용량보다 적게 채워진 경우 남는 칸을 잘라낸다
+        this.memberIds = Arrays.copyOf(builder.memberIds, rowCount);
+        this.ages = Arrays.copyOf(builder.ages, rowCount);
+        this.usernameOrdinals = Arrays.copyOf(builder.usernameOrdinals, rowCount);
+        this.teamOrdinals = Arrays.copyOf(builder.teamOrdinals, rowCount);
+        this.usernames = builder.usernames;
+        this.teamNames = builder.teamNames;
+        this.teamIds = new long[builder.teamIdList.size()];
+        for (int i = 0; i < teamIds.length; i++) {
+            teamIds[i] = builder.teamIdList.get(i);
+        }
+    }
+
+    public static Builder builder(int capacity) {
+        return new Builder(capacity);
+    }
+
+    public static class Builder {
+        private int rowCount;
+        private final long[] memberIds;
+        private final int[] ages;
+        private final int[] usernameOrdinals;
+        private final int[] teamOrdinals;
+
+        private final List<String> usernames = new ArrayList<>();
+        private final Map<String, Integer> usernameIndex = new HashMap<>();
+        private final List<Long> teamIdList = new ArrayList<>();
+        private final List<String> teamNames = new ArrayList<>();
+        private final Map<Long, Integer> teamIndex = new HashMap<>();
+
+        private Builder(int capacity) {
+            this.memberIds = new long[capacity];
+            this.ages = new int[capacity];
+            this.usernameOrdinals = new int[capacity];
+            this.teamOrdinals = new int[capacity];
+        }
+
+        public Builder add(long memberId, String username, int age, Long teamId, String teamName) {
+            memberIds[rowCount] = memberId;
+            ages[rowCount] = age;
+            usernameOrdinals[rowCount] = usernameIndex.computeIfAbsent(username, key -> {
+                usernames.add(key);
+                return usernames.size() - 1;
+            });
+            teamOrdinals[rowCount] = teamId == null ? -1 : teamIndex.computeIfAbsent(teamId, key -> {
+                teamIdList.add(key);
+                teamNames.add(teamName);
+                return teamIdList.size() - 1;
+            });
+            rowCount++;
+            return this;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public MemberColumnarPage build(int page, int size, long totalElements) {
+            return new MemberColumnarPage(this, page, size, totalElements);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// 커서(키셋) 페이징 결과 - count 쿼리 없이 다음 페이지 존재 여부만 내려준다
+@Getter
+public class MemberCursorPage {
+
+    private final List<MemberTeamDto> content;
+    private final String nextCursor;
+    private final boolean hasNext;
+
+    public MemberCursorPage(List<MemberTeamDto> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+
+    // 클라이언트에는 member_id 를 그대로 노출하지 않는다
+    public static String encodeCursor(Long lastMemberId) {
+        if (lastMemberId == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastMemberId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.valueOf(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 커서 값입니다: " + cursor, e);
+        }
+    }
+}
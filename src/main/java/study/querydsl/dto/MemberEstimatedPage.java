@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// 전체 건수가 추정값일 수 있는 페이지 - 기존 Page 응답 필드에 exact 만 더한다
+// exact 가 false 면 totalElements/totalPages 는 추정값이거나 count-limit 하한이다
+public class MemberEstimatedPage extends PageImpl<MemberTeamDto> {
+
+    private final boolean exact;
+
+    public MemberEstimatedPage(List<MemberTeamDto> content, Pageable pageable, long total, boolean exact) {
+        super(content, pageable, total);
+        this.exact = exact;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+// 업로드 파일의 한 줄을 읽을 수 없을 때 - 몇 번째 줄인지 같이 넘겨서 적재 결과에 담는다
+@Getter
+public class MemberImportException extends IllegalArgumentException {
+
+    private final long line;
+
+    public MemberImportException(long line, String message, Throwable cause) {
+        super(message, cause);
+        this.line = line;
+    }
+}
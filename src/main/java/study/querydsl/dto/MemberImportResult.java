@@ -0,0 +1,35 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+// 실패하면 rows 는 커밋된 건수, failedOffset / failedLine 은 적재되지 않은 첫 행의 위치 - 그 행부터 다시 올리면 된다
+@Getter
+public class MemberImportResult {
+
+    private final long rows;
+    private final long teamsCreated;
+    private final long elapsedMillis;
+    private final double rowsPerSecond;
+    private final Long failedOffset;
+    private final Long failedLine;
+    private final String error;
+
+    public MemberImportResult(long rows, long teamsCreated, long elapsedMillis) {
+        this(rows, teamsCreated, elapsedMillis, null, null, null);
+    }
+
+    public MemberImportResult(long rows, long teamsCreated, long elapsedMillis,
+                              Long failedOffset, Long failedLine, String error) {
+        this.rows = rows;
+        this.teamsCreated = teamsCreated;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+        this.failedOffset = failedOffset;
+        this.failedLine = failedLine;
+        this.error = error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
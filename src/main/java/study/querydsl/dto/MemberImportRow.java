@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MemberImportRow {
+
+    private String username;
+    private int age;
+    private String teamName;
+    // 업로드 파일에서 몇 번째 줄인지 (MemberImportReader 가 채운다, 파일이 아니면 0)
+    @JsonIgnore
+    private long line;
+
+    public MemberImportRow(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
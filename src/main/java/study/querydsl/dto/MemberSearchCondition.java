@@ -2,12 +2,36 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
 
     //회원명, 팀명, 나이,(ageGoe, ageLoe)
     private String userName;
+    private UsernameMatch userNameMatch;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    // 캐시 키용 - 쿼리에서 무시되는 빈 문자열 조건은 null 로 맞춰서 같은 검색이 같은 키가 되도록 한다
+    public MemberSearchCondition normalized() {
+        final MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUserName(hasText(userName) ? userName : null);
+        normalized.setUserNameMatch(hasText(userName) && userNameMatch != UsernameMatch.EXACT ? userNameMatch : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    // 회원명 조건을 like 로 거는지 (앞부분/부분 문자열)
+    public boolean hasUserNamePattern() {
+        return hasText(userName) && (userNameMatch == UsernameMatch.PREFIX || userNameMatch == UsernameMatch.CONTAINS);
+    }
+
+    // ageGoe > ageLoe 면 어떤 나이도 만족하지 않는다 - 레포지토리는 SQL 없이 빈 결과를 돌려준다
+    public boolean hasEmptyAgeRange() {
+        return ageGoe != null && ageLoe != null && ageGoe > ageLoe;
+    }
 }
@@ -0,0 +1,27 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+// 팀별 회원 수와 나이 통계 - 회원이 없는 팀은 평균/최소/최대가 null
+@Getter
+public class TeamStatsDto {
+
+    private final Long teamId;
+    private final String teamName;
+    private final long memberCount;
+    private final long ageSum;
+    private final Double ageAvg;
+    private final Integer ageMin;
+    private final Integer ageMax;
+
+    public TeamStatsDto(Long teamId, String teamName, long memberCount, long ageSum,
+                        Double ageAvg, Integer ageMin, Integer ageMax) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.ageAvg = ageAvg;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.dto;
+
+// 회원명 조건을 비교하는 방식 - 지정하지 않으면 EXACT
+public enum UsernameMatch {
+    EXACT,
+    // 앞부분 일치 (자동완성)
+    PREFIX,
+    // 부분 문자열
+    CONTAINS
+}
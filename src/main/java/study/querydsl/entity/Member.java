@@ -1,6 +1,8 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -8,9 +10,18 @@ import javax.persistence.*;
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// 검색 조건(회원명, 나이 범위, 팀 + 나이)별 인덱스 - MemberQueryPlanTest 에서 실행계획으로 확인한다
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
 public class Member {
 
-    @Id @GeneratedValue
+    // 대량 적재 시 insert 마다 시퀀스를 호출하지 않도록 50개씩 미리 할당받는다
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -0,0 +1,75 @@
+package study.querydsl.event;
+
+import java.util.Arrays;
+
+// 엔티티 insert/update/delete 가 커밋된 뒤 발행되는 이벤트
+// state/oldState 는 하이버네이트 영속성 상태 배열 (propertyNames 순서), 연관관계는 엔티티(프록시) 그대로 들어 있다
+// 벌크 연산(update/delete 쿼리, 네이티브 SQL)은 엔티티를 거치지 않으므로 발행되지 않는다
+public final class EntityChangedEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Class<?> entityType;
+    private final Object id;
+    private final Type type;
+    private final String[] propertyNames;
+    private final Object[] state;
+    private final Object[] oldState;
+
+    public EntityChangedEvent(Class<?> entityType, Object id, Type type,
+                              String[] propertyNames, Object[] state, Object[] oldState) {
+        this.entityType = entityType;
+        this.id = id;
+        this.type = type;
+        this.propertyNames = propertyNames;
+        this.state = state;
+        this.oldState = oldState;
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isFor(Class<?> type) {
+        return type.isAssignableFrom(entityType);
+    }
+
+    // 변경 후 값 - delete 면 null
+    public Object get(String property) {
+        return state != null ? state[indexOf(property)] : null;
+    }
+
+    // 변경 전 값 - insert 면 null, update 는 하이버네이트가 스냅샷을 갖고 있을 때만 있다
+    public Object getOld(String property) {
+        return oldState != null ? oldState[indexOf(property)] : null;
+    }
+
+    public boolean hasOldState() {
+        return oldState != null;
+    }
+
+    private int indexOf(String property) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyNames[i].equals(property)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(entityType.getSimpleName() + " 에 없는 속성입니다: " + property);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityChangedEvent{" + type + " " + entityType.getSimpleName() + "#" + id
+                + " properties=" + Arrays.toString(propertyNames) + "}";
+    }
+}
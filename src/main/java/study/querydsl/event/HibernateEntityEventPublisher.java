@@ -0,0 +1,92 @@
+package study.querydsl.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+// 하이버네이트 커밋 후(post-commit) 엔티티 이벤트를 스프링 EntityChangedEvent 로 다시 발행한다
+// 롤백된 변경은 발행되지 않으므로 캐시 무효화/증분 집계가 커밋된 상태만 따라간다
+@Slf4j
+@Component
+public class HibernateEntityEventPublisher implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher publisher;
+
+    public HibernateEntityEventPublisher(EntityManagerFactory emf, ApplicationEventPublisher publisher) {
+        this.emf = emf;
+        this.publisher = publisher;
+    }
+
+    @PostConstruct
+    public void register() {
+        final EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(new EntityChangedEvent(event.getPersister().getMappedClass(), event.getId(), EntityChangedEvent.Type.INSERT,
+                event.getPersister().getPropertyNames(), event.getState(), null));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(new EntityChangedEvent(event.getPersister().getMappedClass(), event.getId(), EntityChangedEvent.Type.UPDATE,
+                event.getPersister().getPropertyNames(), event.getState(), event.getOldState()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(new EntityChangedEvent(event.getPersister().getMappedClass(), event.getId(), EntityChangedEvent.Type.DELETE,
+                event.getPersister().getPropertyNames(), null, event.getDeletedState()));
+    }
+
+    // 커밋 이후에 호출되므로 리스너 예외가 트랜잭션 결과를 바꾸지 않도록 로그만 남긴다
+    private void publish(EntityChangedEvent event) {
+        try {
+            publisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.warn("엔티티 변경 이벤트 처리 실패: {}", event, e);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return true;
+    }
+}
@@ -0,0 +1,193 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// 페이징 검색의 count 쿼리를 컨텐츠 쿼리와 동시에 별도 스레드(별도 커넥션)에서 실행한다
+// 얼마나 겹쳐서 실행됐는지(overlap) 와 취소/타임아웃 횟수를 모아서 보여준다
+// 스레드 인터럽트로는 실행 중인 JDBC statement 가 멈추지 않으므로, 취소/타임아웃 때 count 가 돌고 있는 세션의 쿼리를 취소한다
+@Slf4j
+@Component
+public class ConcurrentCountExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder used = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder contentNanos = new LongAdder();
+    private final LongAdder countNanos = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder overlapNanos = new LongAdder();
+
+    public ConcurrentCountExecutor(@Value("${member.concurrent-count.pool-size:4}") int poolSize,
+                                   @Value("${member.concurrent-count.queue-size:100}") int queueSize,
+                                   @Value("${member.concurrent-count.timeout-millis:3000}") long defaultTimeoutMillis) {
+        final AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    final Thread thread = new Thread(runnable, "member-count-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    // count 쿼리는 실행할 세션을 running 에 알리고, 끝나면 null 을 알린다
+    interface CountQuery {
+        long count(Consumer<Session> running);
+    }
+
+    // 큐가 가득 차면 null - 호출한 쪽에서 기존처럼 같은 스레드에서 count 한다
+    CountTask start(CountQuery countQuery) {
+        final CountTask task = new CountTask();
+        try {
+            task.future = executor.submit(() -> {
+                final long startedAt = System.nanoTime();
+                task.worker = Thread.currentThread();
+                try {
+                    return countQuery.count(task::running);
+                } finally {
+                    task.elapsed = System.nanoTime() - startedAt;
+                }
+            });
+            started.increment();
+            return task;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return null;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("started", started.sum());
+        stats.put("used", used.sum());
+        stats.put("cancelled", cancelled.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("contentMillis", TimeUnit.NANOSECONDS.toMillis(contentNanos.sum()));
+        stats.put("countMillis", TimeUnit.NANOSECONDS.toMillis(countNanos.sum()));
+        stats.put("wallMillis", TimeUnit.NANOSECONDS.toMillis(wallNanos.sum()));
+        // 순차 실행 대비 줄어든 시간 = 컨텐츠 + count - 실제 경과 시간
+        stats.put("overlapMillis", TimeUnit.NANOSECONDS.toMillis(overlapNanos.sum()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    class CountTask {
+        private volatile Future<Long> future;
+        private volatile long elapsed;
+        private volatile boolean awaited;
+        private volatile boolean cancelRequested;
+        private volatile Thread worker;
+        private Session session;
+
+        private CountTask() {
+        }
+
+        long await(long timeoutMillis) {
+            awaited = true;
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                timedOut.increment();
+                throw new QueryTimeoutException("count 쿼리가 " + timeoutMillis + "ms 안에 끝나지 않았습니다", e);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("count 쿼리 대기 중 인터럽트", e);
+            } catch (ExecutionException e) {
+                // statement 타임아웃(query timeout 힌트)으로 먼저 끝난 경우도 같은 타임아웃으로 본다
+                if (e.getCause() instanceof javax.persistence.QueryTimeoutException) {
+                    timedOut.increment();
+                    throw new QueryTimeoutException("count 쿼리가 statement 타임아웃으로 취소되었습니다", e.getCause());
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (CancellationException e) {
+                throw new IllegalStateException("count 쿼리가 취소되었습니다", e);
+            }
+        }
+
+        // PageableExecutionUtils 가 count 를 쓰지 않았으면 취소하고, 썼으면 겹친 시간을 기록한다
+        void finish(long contentElapsedNanos, long wallElapsedNanos) {
+            contentNanos.add(contentElapsedNanos);
+            wallNanos.add(wallElapsedNanos);
+            if (!awaited) {
+                cancel();
+                cancelled.increment();
+                return;
+            }
+            used.increment();
+            countNanos.add(elapsed);
+            overlapNanos.add(Math.max(0, contentElapsedNanos + elapsed - wallElapsedNanos));
+        }
+
+        // 큐에서 기다리는 중이면 future 취소로 끝나고, 실행 중이면 세션의 마지막 statement 를 취소해서 커넥션을 돌려받는다
+        private void cancel() {
+            future.cancel(true);
+            synchronized (this) {
+                cancelRequested = true;
+                cancelQuery(session);
+            }
+        }
+
+        // count 쿼리 스레드에서 호출 - 이미 취소됐으면 쿼리를 시작하지 않도록 예외를 던진다
+        // count 캐시의 백그라운드 갱신처럼 다른 스레드에서 실행되는 count 는 이 작업과 상관없으므로 무시한다
+        private void running(Session session) {
+            if (Thread.currentThread() != worker) {
+                return;
+            }
+            synchronized (this) {
+                this.session = session;
+                if (session != null && cancelRequested) {
+                    throw new CancellationException("count 쿼리가 취소되었습니다");
+                }
+            }
+        }
+
+        private void cancelQuery(Session session) {
+            if (session == null) {
+                return;
+            }
+            try {
+                session.cancelQuery();
+            } catch (RuntimeException e) {
+                log.debug("count 쿼리 취소 실패", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberSearchPredicates.searchCondition;
+import static study.querydsl.entity.QTeam.team;
+
+// 벌크 수정/삭제를 member_id 순서로 chunkSize 건씩(keyset) 끊어서 각각 짧은 트랜잭션으로 실행한다
+// 한 번에 큰 범위를 잠그지 않고, 구간 사이에 throttle 만큼 쉬어서 다른 트랜잭션이 끼어들 수 있게 한다
+// 호출한 쪽 영속성 컨텍스트는 em.clear() 로 전부 날리지 않고 변경된 Member 만 detach 한다
+// 주의) 각 구간은 별도 트랜잭션이므로 호출한 트랜잭션에서 아직 flush 되지 않은 변경은 보이지 않는다
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate chunkTransaction;
+    private final int defaultChunkSize;
+    private final long defaultThrottleMillis;
+    private final UsernameIndex usernameIndex;
+    private final TeamStatistics teamStatistics;
+
+    public MemberBulkRepository(EntityManager em,
+                                EntityManagerFactory emf,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${member.bulk.chunk-size:1000}") int defaultChunkSize,
+                                @Value("${member.bulk.throttle-millis:0}") long defaultThrottleMillis,
+                                UsernameIndex usernameIndex,
+                                TeamStatistics teamStatistics) {
+        this.em = em;
+        this.emf = emf;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultThrottleMillis = defaultThrottleMillis;
+        this.usernameIndex = usernameIndex;
+        this.teamStatistics = teamStatistics;
+    }
+
+    // ex) bulkUpdate(condition, update -> update.set(member.age, member.age.add(1)))
+    public long bulkUpdate(MemberSearchCondition condition, Consumer<JPAUpdateClause> assignments) {
+        return bulkUpdate(condition, assignments, defaultChunkSize, defaultThrottleMillis);
+    }
+
+    public long bulkUpdate(MemberSearchCondition condition, Consumer<JPAUpdateClause> assignments,
+                           int chunkSize, long throttleMillis) {
+        try {
+            return executeInChunks(condition, chunkSize, throttleMillis, ids -> {
+                final JPAUpdateClause update = queryFactory.update(member);
+                assignments.accept(update);
+                return update.where(member.id.in(ids)).execute();
+            });
+        } finally {
+            // 회원명을 바꿨을 수 있는데 엔티티 이벤트가 없으므로 회원명 인덱스를 다시 만든다 (지운 회원은 후보에 남아도 like 로 걸러진다)
+            usernameIndex.invalidate();
+            teamStatistics.reconcileAsync();
+        }
+    }
+
+    public long bulkDelete(MemberSearchCondition condition) {
+        return bulkDelete(condition, defaultChunkSize, defaultThrottleMillis);
+    }
+
+    public long bulkDelete(MemberSearchCondition condition, int chunkSize, long throttleMillis) {
+        try {
+            return executeInChunks(condition, chunkSize, throttleMillis,
+                    ids -> queryFactory.delete(member).where(member.id.in(ids)).execute());
+        } finally {
+            // 벌크 연산은 엔티티 이벤트가 없으므로 팀 통계를 DB 집계로 다시 맞춘다
+            teamStatistics.reconcileAsync();
+        }
+    }
+
+    private long executeInChunks(MemberSearchCondition condition, int chunkSize, long throttleMillis,
+                                 ChunkStatement statement) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize 는 1 이상이어야 합니다: " + chunkSize);
+        }
+        if (condition.hasEmptyAgeRange()) {
+            return 0;
+        }
+        // 청크 트랜잭션 안에서는 공유 EntityManager 가 새 트랜잭션의 것으로 바뀌므로 호출한 쪽 것을 미리 잡아둔다
+        final EntityManager callerEntityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+
+        // member_id 구간이 아니라 keyset(id > lastId order by id limit chunkSize)으로 나눠서 id 가 듬성듬성해도 빈 청크가 없다
+        // 람다 안에서 더하므로 배열로 둔다
+        final long[] affected = {0};
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            final long after = lastId;
+            final List<Long> ids = chunkTransaction.execute(status -> {
+                final List<Long> chunk = queryFactory
+                        .select(member.id)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                member.id.gt(after),
+                                searchCondition(condition)
+                        )
+                        .orderBy(member.id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (!chunk.isEmpty()) {
+                    affected[0] += statement.execute(chunk);
+                    evict(callerEntityManager, chunk);
+                }
+                return chunk;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < chunkSize) {
+                break;
+            }
+
+            if (throttleMillis > 0) {
+                try {
+                    Thread.sleep(throttleMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return affected[0];
+    }
+
+    // 호출한 트랜잭션의 1차 캐시에 올라와 있는 Member 중 이번 구간에서 바뀐 것만 떼어낸다
+    private void evict(EntityManager callerEntityManager, List<Long> ids) {
+        if (callerEntityManager == null) {
+            return;
+        }
+        final Set<Long> affectedIds = new HashSet<>(ids);
+        final SessionImplementor session = callerEntityManager.unwrap(SessionImplementor.class);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof Member && affectedIds.contains(entry.getValue().getId())) {
+                callerEntityManager.detach(entry.getKey());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement {
+        long execute(List<Long> ids);
+    }
+}
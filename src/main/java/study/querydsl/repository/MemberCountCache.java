@@ -0,0 +1,171 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// 페이징 검색의 전체 건수(count) 캐시
+// ttl 이내면 그대로, ttl ~ ttl + stale 구간이면 이전 값을 주고 백그라운드에서 갱신한다 (stale-while-revalidate)
+@Slf4j
+@Component
+public class MemberCountCache {
+
+    private final Map<MemberSearchCondition, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor;
+    // invalidateAll() 이전에 시작된 조회/갱신 결과가 다시 캐시에 들어가지 않도록 세대 번호로 구분한다
+    private final AtomicLong generation = new AtomicLong();
+
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public MemberCountCache(@Value("${member.count-cache.ttl-millis:5000}") long ttlMillis,
+                            @Value("${member.count-cache.stale-millis:30000}") long staleMillis,
+                            @Value("${member.count-cache.max-size:1000}") int maxSize) {
+        this(ttlMillis, staleMillis, maxSize, System::currentTimeMillis, Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "member-count-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    // 테스트에서 시계와 갱신 스레드를 바꿔 끼운다
+    MemberCountCache(long ttlMillis, long staleMillis, int maxSize, LongSupplier clock, ExecutorService refreshExecutor) {
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        final MemberSearchCondition key = condition.normalized();
+        final long currentGeneration = generation.get();
+        final Entry entry = entries.get(key);
+
+        if (entry != null && entry.generation == currentGeneration) {
+            final long age = clock.getAsLong() - entry.loadedAt;
+            if (age < ttlMillis) {
+                hits.increment();
+                return entry.count;
+            }
+            if (age < ttlMillis + staleMillis) {
+                staleHits.increment();
+                refreshAsync(key, entry, countQuery);
+                return entry.count;
+            }
+        }
+
+        misses.increment();
+        final long count = countQuery.getAsLong();
+        put(key, count, currentGeneration);
+        return count;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        final long hit = hits.sum();
+        final long stale = staleHits.sum();
+        final long miss = misses.sum();
+        final long total = hit + stale + miss;
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hit);
+        stats.put("staleHits", stale);
+        stats.put("misses", miss);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (hit + stale) / total);
+        stats.put("refreshes", refreshes.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void refreshAsync(MemberSearchCondition key, Entry entry, LongSupplier countQuery) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshes.increment();
+                    put(key, countQuery.getAsLong(), entry.generation);
+                } catch (RuntimeException e) {
+                    log.warn("count 캐시 갱신 실패 condition={}", key, e);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void put(MemberSearchCondition key, long count, long loadedGeneration) {
+        if (loadedGeneration != generation.get()) {
+            return;
+        }
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            evictOldest();
+        }
+        entries.put(key, new Entry(count, clock.getAsLong(), loadedGeneration));
+    }
+
+    private void evictOldest() {
+        MemberSearchCondition oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<MemberSearchCondition, Entry> candidate : entries.entrySet()) {
+            if (candidate.getValue().loadedAt < oldest) {
+                oldest = candidate.getValue().loadedAt;
+                oldestKey = candidate.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey);
+        }
+    }
+
+    private static final class Entry {
+        private final long count;
+        private final long loadedAt;
+        private final long generation;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(long count, long loadedAt, long generation) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -1,20 +1,41 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberImportException;
+import study.querydsl.dto.MemberImportResult;
+import study.querydsl.dto.MemberImportRow;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberSearchPredicates.andBetween;
+import static study.querydsl.repository.MemberSearchPredicates.usernameMatches;
+import static study.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static study.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static study.querydsl.repository.MemberSearchPredicates.ageLoe;
 import static study.querydsl.entity.QTeam.team;
 
 @Repository
@@ -22,10 +43,16 @@ public class MemberJpaRepository {
 
     private final  EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberQueryMetrics metrics;
+    private final TransactionTemplate batchTransaction;
+    private final MemberSearchQueryCache searchQueries = new MemberSearchQueryCache(this::searchQuery);
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberQueryMetrics metrics, PlatformTransactionManager transactionManager) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(this.em);
+        this.metrics = metrics;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
 
@@ -34,6 +61,88 @@ public class MemberJpaRepository {
 
     }
 
+    // 대량 적재 - batchSize 건씩 별도 트랜잭션(REQUIRES_NEW)으로 persist -> flush(JDBC 배치 insert) -> 커밋한다
+    // 파일 전체가 한 트랜잭션이 아니므로 뒤쪽의 잘못된 줄 하나가 앞 배치까지 되돌리지 않고, undo/잠금도 배치 크기만큼만 쌓인다
+    // 실패하면 거기서 멈추고 적재되지 않은 첫 행의 위치(행 offset, 줄 번호)를 결과에 담는다
+    // 팀은 이름 -> id 로컬 캐시로 한 번만 조회/생성하고, 배치 사이에는 프록시 참조(getReference)만 건다
+    public MemberImportResult importMembers(Iterator<MemberImportRow> rows, int batchSize){
+        final long startedAt = System.nanoTime();
+        final Map<String, Long> teamIds = new HashMap<>();
+        final List<MemberImportRow> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        long teamsCreated = 0;
+        MemberImportException readFailure = null;
+
+        while (readFailure == null) {
+            batch.clear();
+            try {
+                while (batch.size() < batchSize && rows.hasNext()) {
+                    batch.add(rows.next());
+                }
+            } catch (MemberImportException e) {
+                // 읽을 수 없는 줄 앞까지는 적재한다
+                readFailure = e;
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                final Long created = batchTransaction.execute(status -> importBatch(batch, teamIds));
+                teamsCreated += created != null ? created : 0;
+            } catch (RuntimeException e) {
+                final MemberImportRow first = batch.get(0);
+                return new MemberImportResult(imported, teamsCreated, elapsedMillis(startedAt),
+                        imported, first.getLine(), "배치 적재에 실패했습니다: " + e.getMessage());
+            }
+            imported += batch.size();
+        }
+
+        if (readFailure != null) {
+            return new MemberImportResult(imported, teamsCreated, elapsedMillis(startedAt),
+                    imported, readFailure.getLine(), readFailure.getMessage());
+        }
+        return new MemberImportResult(imported, teamsCreated, elapsedMillis(startedAt));
+    }
+
+    private long importBatch(List<MemberImportRow> batch, Map<String, Long> teamIds){
+        long teamsCreated = 0;
+        for (MemberImportRow row : batch) {
+            final Member member = new Member(row.getUsername(), row.getAge());
+
+            if (hasText(row.getTeamName())) {
+                Long teamId = teamIds.get(row.getTeamName());
+                if (teamId == null) {
+                    teamId = findTeamIdByName(row.getTeamName());
+                    if (teamId == null) {
+                        final Team team = new Team(row.getTeamName());
+                        em.persist(team);
+                        teamId = team.getId();
+                        teamsCreated++;
+                    }
+                    teamIds.put(row.getTeamName(), teamId);
+                }
+                // 초기화되지 않은 mappedBy 컬렉션(team.members)에 add 하는 것은 select 없이 큐에만 쌓인다
+                member.changeTeam(em.getReference(Team.class, teamId));
+            }
+            em.persist(member);
+        }
+        em.flush();
+        em.clear();
+        return teamsCreated;
+    }
+
+    private static long elapsedMillis(long startedAt){
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    private Long findTeamIdByName(String teamName){
+        final List<Long> ids = em.createQuery("select t.id from Team t where t.name = :name", Long.class)
+                .setParameter("name", teamName)
+                .setMaxResults(1)
+                .getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
     public Optional<Member> findById(Long id){
         final Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
@@ -62,11 +171,12 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition contition){
         BooleanBuilder builder = new BooleanBuilder();
 
         if (hasText(contition.getUserName())) {
-            builder.and(member.username.eq(contition.getUserName()));
+            builder.and(usernameMatches(contition));
         }
 
 
@@ -81,7 +191,7 @@ public class MemberJpaRepository {
         if(contition.getAgeLoe() != null){
             builder.and(member.age.loe(contition.getAgeLoe()));
         }
-        return queryFactory
+        return metrics.recordList("searchByBuilder", contition, () -> queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -92,12 +202,47 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(builder)
-                .fetch();
+                .fetch());
 
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
+        // 비어 있는 나이 범위는 SQL 없이 빈 결과
+        if (condition.hasEmptyAgeRange()) {
+            return Collections.emptyList();
+        }
+        // 조건 모양별로 컴파일해 둔 JPQL 재사용 (searchByBuilder 는 매번 Querydsl 로 쿼리를 만든다)
+        return metrics.recordList("search", condition, () -> MemberSearchQueryCache.toMemberTeamDtos(
+                searchQueries.createQuery(em, condition).getResultList()));
+    }
+
+    JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition){
         return queryFactory
+                .select(MemberSearchQueryCache.MEMBER_TEAM_PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                );
+    }
+
+    // 대용량 내보내기 - 결과를 List 로 모으지 않고 forward-only 커서로 한 건씩 sink 에 흘려보낸다
+    // fetchSize 만큼만 드라이버가 버퍼링하고, clearInterval 마다 영속성 컨텍스트를 비워서 메모리를 일정하게 유지한다
+    @Transactional(readOnly = true)
+    public long export(MemberSearchCondition condition, int fetchSize, int clearInterval, Consumer<MemberTeamDto> sink){
+        if (condition.hasEmptyAgeRange()) {
+            return 0L;
+        }
+        return metrics.record("export", condition,
+                () -> exportRows(condition, fetchSize, clearInterval, sink), Long::longValue);
+    }
+
+    private long exportRows(MemberSearchCondition condition, int fetchSize, int clearInterval, Consumer<MemberTeamDto> sink){
+        long count = 0;
+        try (CloseableIterator<MemberTeamDto> iterator = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -108,47 +253,57 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUserName()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
                 )
-                .fetch();
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+            while (iterator.hasNext()) {
+                sink.accept(iterator.next());
+                if (++count % clearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+        return count;
     }
 
+    @Transactional(readOnly = true)
     public List<Member> searchMember(MemberSearchCondition condition){
-        return queryFactory
+        if (condition.hasEmptyAgeRange()) {
+            return Collections.emptyList();
+        }
+        return metrics.recordList("searchMember", condition, () -> queryFactory
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUserName()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
 //                        ageGoe(condition.getAgeGoe()),
 //                        ageLoe(condition.getAgeLoe()),
                         andBetween(condition.getAgeGoe(), condition.getAgeLoe())
                 )
-                .fetch();
-    }
-
-    private BooleanExpression andBetween(Integer ageGoe, Integer ageLoe) {
-        return ageGoe(ageGoe).and(ageLoe(ageLoe));
+                .fetch());
     }
 
-    // Predicate 보다 BooleanExpression를 쓰는게 좋다 (컴포지트 가능)
-    private BooleanExpression usernameEq(String userName) {
-        return hasText(userName) ? member.username.eq(userName) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    // 호출한 쪽에서 팀 정보까지 쓸 때 - 팀을 같은 select 로 가져와서 행마다 팀 프록시를 초기화하지 않는다
+    // to-one 페치 조인이라 행 수가 늘지 않으므로 페이징과 같이 써도 된다
+    @Transactional(readOnly = true)
+    public List<Member> searchMemberFetchJoin(MemberSearchCondition condition){
+        if (condition.hasEmptyAgeRange()) {
+            return Collections.emptyList();
+        }
+        return metrics.recordList("searchMemberFetchJoin", condition, () -> queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                )
+                .fetch());
     }
 
 }
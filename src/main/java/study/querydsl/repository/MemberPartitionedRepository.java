@@ -0,0 +1,203 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberSearchPredicates.searchCondition;
+import static study.querydsl.entity.QTeam.team;
+
+// 큰 결과를 member_id 구간 N 개로 나눠서 구간마다 별도 EntityManager(=별도 커넥션)로 동시에 조회한다
+// 결과는 구간 순서(= member_id 순서)대로 이어붙이고, 집계는 구간별 부분합을 합쳐서 계산한다
+// 각 구간은 자기 EntityManager 에서 바로 닫히므로 돌려주는 엔티티는 준영속 상태다
+@Repository
+public class MemberPartitionedRepository {
+
+    // member.age.sum() 은 Integer 로 선언되지만 하이버네이트는 Long 을 돌려주므로 타입을 맞춰둔다
+    private static final NumberExpression<Long> AGE_SUM = Expressions.numberTemplate(Long.class, "sum({0})", member.age);
+
+    private final EntityManagerFactory emf;
+    private final ThreadPoolExecutor executor;
+
+    // 구간마다 커넥션을 하나씩 잡으므로 대기 큐도 제한한다 - 가득 차면 AbortPolicy 로 거절해서 호출한 쪽에 RejectedExecutionException 을 던진다
+    public MemberPartitionedRepository(EntityManagerFactory emf,
+                                       @Value("${member.partition.pool-size:4}") int poolSize,
+                                       @Value("${member.partition.queue-size:32}") int queueSize) {
+        this.emf = emf;
+        final AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    final Thread thread = new Thread(runnable, "member-partition-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition, int partitions) {
+        final List<List<MemberTeamDto>> slices = scan(condition, partitions, (queryFactory, idRange) -> queryFactory
+                .select(MemberSearchQueryCache.MEMBER_TEAM_PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        idRange,
+                        searchCondition(condition)
+                )
+                .orderBy(member.id.asc())
+                .fetch());
+        return concat(slices);
+    }
+
+    // EntityManager 가 닫힌 뒤에도 팀을 쓸 수 있도록 페치 조인한다
+    public List<Member> searchMember(MemberSearchCondition condition, int partitions) {
+        final List<List<Member>> slices = scan(condition, partitions, (queryFactory, idRange) -> queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(
+                        idRange,
+                        searchCondition(condition)
+                )
+                .orderBy(member.id.asc())
+                .fetch());
+        return concat(slices);
+    }
+
+    // 팀별 평균 나이 (QuerydslBasicTest.group) - 구간별로 합계와 건수를 구해서 합친다
+    public Map<String, Double> averageAgeByTeam(MemberSearchCondition condition, int partitions) {
+        final List<List<Tuple>> slices = scan(condition, partitions, (queryFactory, idRange) -> queryFactory
+                .select(team.name, AGE_SUM, member.count())
+                .from(member)
+                .join(member.team, team)
+                .where(
+                        idRange,
+                        searchCondition(condition)
+                )
+                .groupBy(team.name)
+                .fetch());
+
+        final Map<String, long[]> sumAndCount = new TreeMap<>();
+        for (List<Tuple> slice : slices) {
+            for (Tuple tuple : slice) {
+                final long[] acc = sumAndCount.computeIfAbsent(tuple.get(team.name), key -> new long[2]);
+                acc[0] += tuple.get(AGE_SUM);
+                acc[1] += tuple.get(member.count());
+            }
+        }
+
+        final Map<String, Double> averages = new TreeMap<>();
+        sumAndCount.forEach((teamName, acc) -> averages.put(teamName, (double) acc[0] / acc[1]));
+        return averages;
+    }
+
+    private <T> List<List<T>> scan(MemberSearchCondition condition, int partitions,
+                                   BiFunction<JPAQueryFactory, BooleanExpression, List<T>> sliceQuery) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions 는 1 이상이어야 합니다: " + partitions);
+        }
+        if (condition.hasEmptyAgeRange()) {
+            return new ArrayList<>();
+        }
+        final long[] range = idRange(condition);
+        if (range == null) {
+            return new ArrayList<>();
+        }
+        final long minId = range[0];
+        final long maxId = range[1];
+        final long sliceSize = Math.max(1, (maxId - minId + partitions) / partitions);
+
+        final List<Future<List<T>>> futures = new ArrayList<>(partitions);
+        try {
+            for (long from = minId; from <= maxId; from += sliceSize) {
+                final BooleanExpression idRange = member.id.between(from, Math.min(from + sliceSize - 1, maxId));
+                futures.add(executor.submit(() -> inNewEntityManager(queryFactory -> sliceQuery.apply(queryFactory, idRange))));
+            }
+        } catch (RejectedExecutionException e) {
+            // 일부 구간만으로는 결과를 만들 수 없으므로 이미 넣은 구간도 취소한다
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        final List<List<T>> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("구간 조회가 중단되었습니다", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private long[] idRange(MemberSearchCondition condition) {
+        return inNewEntityManager(queryFactory -> {
+            final Tuple range = queryFactory
+                    .select(member.id.min(), member.id.max())
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(
+                            searchCondition(condition)
+                    )
+                    .fetchOne();
+            if (range == null || range.get(member.id.min()) == null) {
+                return null;
+            }
+            return new long[]{range.get(member.id.min()), range.get(member.id.max())};
+        });
+    }
+
+    private <T> T inNewEntityManager(Function<JPAQueryFactory, T> work) {
+        final EntityManager em = emf.createEntityManager();
+        try {
+            return work.apply(new JPAQueryFactory(em));
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <T> List<T> concat(List<List<T>> slices) {
+        int size = 0;
+        for (List<T> slice : slices) {
+            size += slice.size();
+        }
+        final List<T> result = new ArrayList<>(size);
+        slices.forEach(result::addAll);
+        return result;
+    }
+}
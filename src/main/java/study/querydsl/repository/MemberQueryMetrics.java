@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// 검색 메서드별, 조건 모양(어떤 조건 필드가 채워졌는지)별 실행 시간/조회 건수/count 생략 횟수
+// 퍼센타일 히스토그램은 management.metrics.distribution.percentiles-histogram 설정으로 켠다
+@Component
+public class MemberQueryMetrics {
+
+    public static final String QUERY_TIMER = "member.repository.query";
+    public static final String ROWS_SUMMARY = "member.repository.rows";
+    public static final String COUNT_COUNTER = "member.repository.count";
+
+    private static final String[] SHAPE_NAMES = new String[32];
+
+    static {
+        // like - 회원명을 앞부분/부분 문자열로 찾는 경우
+        final String[] fields = {"userName", "teamName", "ageGoe", "ageLoe", "like"};
+        for (int shape = 0; shape < SHAPE_NAMES.length; shape++) {
+            final StringBuilder name = new StringBuilder();
+            for (int bit = 0; bit < fields.length; bit++) {
+                if ((shape & (1 << bit)) != 0) {
+                    name.append(name.length() == 0 ? "" : "+").append(fields[bit]);
+                }
+            }
+            SHAPE_NAMES[shape] = name.length() == 0 ? "none" : name.toString();
+        }
+    }
+
+    private final MeterRegistry registry;
+    // 호출마다 빌더로 미터를 찾지 않도록 메서드+모양별로 한 번만 등록한다
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public MemberQueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static String shapeName(MemberSearchCondition condition) {
+        return SHAPE_NAMES[MemberSearchQueryCache.shapeOf(condition)];
+    }
+
+    public <T> List<T> recordList(String method, MemberSearchCondition condition, Supplier<List<T>> query) {
+        return record(method, condition, query, List::size);
+    }
+
+    public <T> T record(String method, MemberSearchCondition condition, Supplier<T> query, ToLongFunction<T> rows) {
+        final Meters meters = metersOf(method, condition);
+        final T result = meters.timer.record(query);
+        meters.rows.record(rows.applyAsLong(result));
+        return result;
+    }
+
+    // PageableExecutionUtils 등이 count 쿼리를 실행했는지 생략했는지
+    public void recordCount(String method, MemberSearchCondition condition, boolean executed) {
+        final Meters meters = metersOf(method, condition);
+        (executed ? meters.countExecuted : meters.countSkipped).increment();
+    }
+
+    private Meters metersOf(String method, MemberSearchCondition condition) {
+        final String shape = shapeName(condition);
+        return meters.computeIfAbsent(method + ':' + shape, key -> new Meters(registry, method, shape));
+    }
+
+    private static final class Meters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+        private final Counter countExecuted;
+        private final Counter countSkipped;
+
+        private Meters(MeterRegistry registry, String method, String shape) {
+            this.timer = Timer.builder(QUERY_TIMER)
+                    .description("member search query time")
+                    .tags("method", method, "shape", shape)
+                    .register(registry);
+            this.rows = DistributionSummary.builder(ROWS_SUMMARY)
+                    .description("rows returned by member search")
+                    .baseUnit("rows")
+                    .tags("method", method, "shape", shape)
+                    .register(registry);
+            this.countExecuted = Counter.builder(COUNT_COUNTER)
+                    .description("count queries executed or skipped by paged member search")
+                    .tags("method", method, "shape", shape, "outcome", "executed")
+                    .register(registry);
+            this.countSkipped = Counter.builder(COUNT_COUNTER)
+                    .description("count queries executed or skipped by paged member search")
+                    .tags("method", method, "shape", shape, "outcome", "skipped")
+                    .register(registry);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package study.querydsl.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import study.querydsl.entity.Member;
 
@@ -10,4 +12,9 @@ import java.util.List;
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
 
     List<Member> findByUsername(String username);
+
+    // findAll() 후 팀을 꺼내 쓰는 경우 - 팀을 페치 조인해서 한 번에 가져온다
+    @EntityGraph(attributePaths = "team")
+    @Query("select m from Member m")
+    List<Member> findAllWithTeam();
 }
@@ -2,6 +2,9 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberColumnarPage;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberEstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -11,5 +14,9 @@ public interface MemberRepositoryCustom{
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable, long countTimeoutMillis);
+    MemberEstimatedPage searchPageEstimated(MemberSearchCondition condition, Pageable pageable, int countLimit);
+    MemberColumnarPage searchColumnar(MemberSearchCondition condition, Pageable pageable);
+    MemberCursorPage searchAfter(MemberSearchCondition condition, Long lastMemberId, int size);
 
 }
@@ -1,25 +1,43 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.Query;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberColumnarPage;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberEstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberSearchPredicates.andBetween;
+import static study.querydsl.repository.MemberSearchPredicates.usernameEq;
+import static study.querydsl.repository.MemberSearchPredicates.usernameMatches;
+import static study.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static study.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static study.querydsl.repository.MemberSearchPredicates.ageLoe;
 import static study.querydsl.entity.QTeam.team;
 
 //QuerydslRepositorySupport QueryFactory 제공 x, 스프링 데이터 Sort 기능 정상 동작 x
@@ -27,51 +45,86 @@ import static study.querydsl.entity.QTeam.team;
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom{
 
 //    private final JPAQueryFactory queryFactory;
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final ConcurrentCountExecutor countExecutor;
+    private final EntityManagerFactory emf;
+    private final MemberQueryMetrics metrics;
+    private final TeamDirectory teamDirectory;
+    private final UsernameIndex usernameIndex;
+    private final TeamStatistics teamStatistics;
+    private final MemberSearchQueryCache contentQueries;
+    private final MemberSearchQueryCache countQueries;
 
-    public MemberRepositoryImpl(EntityManager em){
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache,
+                                ConcurrentCountExecutor countExecutor, EntityManagerFactory emf,
+                                MemberQueryMetrics metrics, TeamDirectory teamDirectory, UsernameIndex usernameIndex,
+                                TeamStatistics teamStatistics){
         super(Member.class);
+        this.em = em;
         queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.countExecutor = countExecutor;
+        this.emf = emf;
+        this.metrics = metrics;
+        this.teamDirectory = teamDirectory;
+        this.usernameIndex = usernameIndex;
+        this.teamStatistics = teamStatistics;
+        this.contentQueries = new MemberSearchQueryCache(this::contentQuery, teamDirectory);
+        this.countQueries = new MemberSearchQueryCache(this::countQuery, teamDirectory);
     }
 //    public MemberRepositoryImpl(EntityManager em){
 //        this.queryFactory = new JPAQueryFactory(em);
 //    }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return Collections.emptyList();
+        }
+        // 조건 모양별로 컴파일해 둔 JPQL 에 파라미터만 바인딩한다
+        return metrics.recordList("search", condition, () -> MemberSearchQueryCache.toMemberTeamDtos(
+                contentQueries.createQuery(em, condition, memberIds).getResultList()));
 
-        final List<MemberTeamDto> result = from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUserName()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                ).select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).fetch();
-
-//        return queryFactory.select(new QMemberTeamDto(
+//        final List<MemberTeamDto> result = from(member)
+//                .leftJoin(member.team, team)
+//                .where(
+//                        usernameEq(condition.getUserName()),
+//                        teamNameEq(condition.getTeamName()),
+//                        ageGoe(condition.getAgeGoe()),
+//                        ageLoe(condition.getAgeLoe())
+//                ).select(new QMemberTeamDto(
 //                        member.id.as("memberId"),
 //                        member.username,
 //                        member.age,
 //                        team.id.as("teamId"),
 //                        team.name.as("teamName")
-//                        ))
-//                    .from(member)
-//                    .leftJoin(member.team, team)
-//                    .where(
-//                            usernameEq(condition.getUserName()),
-//                            teamNameEq(condition.getTeamName()),
-//                            ageGoe(condition.getAgeGoe()),
-//                            ageLoe(condition.getAgeLoe())
-//                    )
-//                    .fetch();
-        return result;
+//                )).fetch();
+    }
+
+    // 실행계획 테스트용 - 조건 모양별로 실제 실행되는 JPQL
+    MemberSearchQueryCache.CompiledQuery compiledContentQuery(MemberSearchCondition condition) {
+        return contentQueries.get(condition);
+    }
+
+    MemberSearchQueryCache.CompiledQuery compiledCountQuery(MemberSearchCondition condition) {
+        return countQueries.get(condition);
+    }
+
+    // 컨텐츠 쿼리 - 모양별 JPQL 컴파일에 쓰인다
+    // 팀 컬럼을 조회하므로 조인은 남지만 팀 조건은 member.team_id 로 걸어서 (team_id, age) 인덱스를 탄다
+    JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition) {
+        return queryFactory.select(MemberSearchQueryCache.MEMBER_TEAM_PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition, MemberSearchQueryCache.memberIdsPlaceholderOf(condition)),
+                        teamIdIn(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                );
     }
 
 
@@ -81,10 +134,9 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUserName()),
+                        usernameMatches(condition, null),
                         teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
                 ).select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -100,36 +152,277 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
 
-        final QueryResults<MemberTeamDto> results = queryFactory.select(new QMemberTeamDto(
-                member.id.as("memberId"),
-                member.username,
-                member.age,
-                team.id.as("teamId"),
-                team.name.as("teamName")
-        ))
+        final List<MemberTeamDto> content = metrics.recordList("searchPageSimple", condition,
+                () -> fetchPage(condition, memberIds, pageable));
+
+        // fetchResults() 는 매번 count 쿼리를 같이 날리므로 count 는 캐시에서 가져온다
+        final long total = countCache.get(condition, () -> count(condition, memberIds));
+        metrics.recordCount("searchPageSimple", condition, true);
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        final List<MemberTeamDto> content = metrics.recordList("searchPageComplex", condition,
+                () -> fetchPage(condition, memberIds, pageable));// 컨텐츠용 쿼리, 카운터 쿼리 두번 날린다
+
+        //카운터 쿼리 최적화
+        //count 쿼리 생략 가능한 경우 생략해서 처리한다
+        // 페이지 시작이면서 컨텐츠 사이즈가 페이지 사이즈보다 적을 때
+        // 마지막 페이지 일 때 (offset + 컨텐츠 사이즈를 더해서 전체 사이즈 구함)
+        final boolean[] counted = {false};
+        final Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            counted[0] = true;
+            return countCache.get(condition, () -> count(condition, memberIds));
+        });
+        metrics.recordCount("searchPageComplex", condition, counted[0]);
+        return page;
+//        return new PageImpl<>(content, pageable, total);
+
+    }
+
+    // count 쿼리를 컨텐츠 쿼리와 동시에 다른 커넥션에서 시작한다
+    // PageableExecutionUtils 가 count 가 필요 없다고 판단하면 진행 중인 count 는 취소한다
+    // count 가 타임아웃이면 검색을 실패시키지 않고 전체 건수를 추정한 페이지(exact=false)를 돌려준다 - 타임아웃은 timedOut 으로 센다
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable, long countTimeoutMillis) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        final long startedAt = System.nanoTime();
+        final ConcurrentCountExecutor.CountTask countTask = countExecutor.start(
+                running -> countCache.get(condition, () -> countInNewEntityManager(condition, memberIds, countTimeoutMillis, running)));
+
+        final List<MemberTeamDto> content = metrics.recordList("searchPageConcurrent", condition,
+                () -> fetchPage(condition, memberIds, pageable));
+        final long contentElapsed = System.nanoTime() - startedAt;
+
+        final boolean[] counted = {false};
+        if (countTask == null) {
+            final Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+                counted[0] = true;
+                return countCache.get(condition, () -> count(condition, memberIds));
+            });
+            metrics.recordCount("searchPageConcurrent", condition, counted[0]);
+            return page;
+        }
+        try {
+            return PageableExecutionUtils.getPage(content, pageable, () -> {
+                counted[0] = true;
+                return countTask.await(countTimeoutMillis);
+            });
+        } catch (QueryTimeoutException e) {
+            return estimatedPage(condition, content, pageable);
+        } finally {
+            countTask.finish(contentElapsed, System.nanoTime() - startedAt);
+            metrics.recordCount("searchPageConcurrent", condition, counted[0]);
+        }
+    }
+
+    // 전체 건수를 추정해도 되는 페이징 - count 비용이 테이블 크기와 상관없다
+    // 컨텐츠는 pageSize + 1 건을 읽어서 다음 페이지가 있는지 먼저 안다
+    // 1) 다음 페이지가 없으면 컨텐츠로 전체 건수를 안다 (정확)
+    // 2) 회원명 조건 없이 팀명으로 찾으면 팀 통계(회원 수, 나이 최소/최대)로 추정한다 - SQL 없음
+    // 3) 그 외에는 countLimit + 1 건까지만 센다 - 넘지 않으면 정확, 넘으면 countLimit 을 하한으로 돌려준다
+    // 추정값은 적어도 지금까지 읽은 건수 + 1 로 올려서 다음 페이지가 있는데 isLast() 가 true 가 되지 않게 한다
+    @Override
+    @Transactional(readOnly = true)
+    public MemberEstimatedPage searchPageEstimated(MemberSearchCondition condition, Pageable pageable, int countLimit) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return new MemberEstimatedPage(Collections.emptyList(), pageable, 0, true);
+        }
+        final List<MemberTeamDto> rows = metrics.recordList("searchPageEstimated", condition,
+                () -> fetchPage(condition, memberIds, pageable.getOffset(), pageable.getPageSize() + 1));
+        final boolean hasNext = rows.size() > pageable.getPageSize();
+        final List<MemberTeamDto> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        final long fetched = pageable.getOffset() + content.size();
+
+        // 마지막 페이지 - 끝을 넘어선 빈 페이지는 앞에 몇 건이 있는지 모르므로 센다
+        if (!hasNext && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            metrics.recordCount("searchPageEstimated", condition, false);
+            return new MemberEstimatedPage(content, pageable, fetched, true);
+        }
+        final long lowerBound = hasNext ? fetched + 1 : fetched;
+
+        final Long teamEstimate = estimateByTeam(condition);
+        if (teamEstimate != null) {
+            metrics.recordCount("searchPageEstimated", condition, false);
+            return new MemberEstimatedPage(content, pageable, Math.max(teamEstimate, lowerBound), false);
+        }
+
+        final long counted = countUpTo(condition, memberIds, countLimit);
+        metrics.recordCount("searchPageEstimated", condition, true);
+        return counted <= countLimit
+                ? new MemberEstimatedPage(content, pageable, counted, true)
+                : new MemberEstimatedPage(content, pageable, Math.max(countLimit, lowerBound), false);
+    }
+
+    // count 없이 만드는 페이지 - 팀 통계로 추정하고, 못 하면 지금까지 읽은 건수를 하한으로 쓴다
+    // count 를 기다린 것은 페이지가 가득 찼을 때뿐이므로 다음 페이지가 있다고 보고 한 건 더 얹는다
+    private MemberEstimatedPage estimatedPage(MemberSearchCondition condition, List<MemberTeamDto> content, Pageable pageable) {
+        final long fetched = pageable.getOffset() + content.size();
+        final long lowerBound = content.size() == pageable.getPageSize() ? fetched + 1 : fetched;
+        final Long teamEstimate = estimateByTeam(condition);
+        return new MemberEstimatedPage(content, pageable,
+                teamEstimate != null ? Math.max(teamEstimate, lowerBound) : lowerBound, false);
+    }
+
+    // 회원명 조건은 팀 통계로 알 수 없다
+    private Long estimateByTeam(MemberSearchCondition condition) {
+        if (hasText(condition.getUserName()) || !hasText(condition.getTeamName())) {
+            return null;
+        }
+        return teamStatistics.estimateMembers(teamDirectory.idsOf(condition.getTeamName()),
+                condition.getAgeGoe(), condition.getAgeLoe());
+    }
+
+    // countLimit + 1 건에서 멈추는 count - 읽는 행 수가 테이블 크기가 아니라 countLimit 에 비례한다
+    // 목록으로 받지 않고 커서로 넘기면서 세므로 건수만큼 id 를 메모리에 올리지 않는다
+    private long countUpTo(MemberSearchCondition condition, List<Long> memberIds, int countLimit) {
+        final Query<?> query = queryFactory
+                .select(member.id)
                 .from(member)
-                .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUserName()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        usernameMatches(condition, memberIds),
+                        teamIdIn(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
                 )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();// 컨텐츠용 쿼리, 카운터 쿼리 두번 날린다
+                .limit(countLimit + 1L)
+                .createQuery()
+                .unwrap(Query.class);
+        long counted = 0;
+        try (ScrollableResults results = query
+                .setFetchSize(Math.min(countLimit + 1, 1000))
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                counted++;
+            }
+        }
+        return counted;
+    }
 
-        final List<MemberTeamDto> content = results.getResults();
-        final long total = results.getTotal();
+    // 하이버네이트 5.4 는 javax.persistence.query.timeout(ms) 을 초 단위로 반올림해서 500ms 미만이면 타임아웃이 없어진다
+    // 그래서 초 단위 힌트를 1초 이상으로 올려서 걸고, 더 짧은 대기는 CountTask 가 statement 를 취소해서 끊는다
+    private long countInNewEntityManager(MemberSearchCondition condition, List<Long> memberIds, long timeoutMillis,
+                                         Consumer<Session> running) {
+        if (matchesNothing(condition, memberIds)) {
+            return 0L;
+        }
+        final EntityManager countEntityManager = emf.createEntityManager();
+        try {
+            running.accept(countEntityManager.unwrap(Session.class));
+            final int timeoutSeconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (timeoutMillis + 999) / 1000));
+            final Object count = countQueries.createQuery(countEntityManager, condition, memberIds)
+                    .setHint(QueryHints.TIMEOUT_HIBERNATE, timeoutSeconds)
+                    .getSingleResult();
+            return count != null ? ((Number) count).longValue() : 0L;
+        } finally {
+            running.accept(null);
+            countEntityManager.close();
+        }
+    }
 
-        return new PageImpl<>(content, pageable, total);
+    // 컬럼형 페이지 - 조회 결과(Object[])를 DTO 로 바꾸지 않고 바로 기본형 배열에 채운다
+    @Override
+    @Transactional(readOnly = true)
+    public MemberColumnarPage searchColumnar(MemberSearchCondition condition, Pageable pageable) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return MemberColumnarPage.builder(0).build(pageable.getPageNumber(), pageable.getPageSize(), 0);
+        }
+        final List<?> rows = metrics.recordList("searchColumnar", condition, () -> contentQueries.createQuery(em, condition, memberIds)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList());
+
+        final MemberColumnarPage.Builder builder = MemberColumnarPage.builder(rows.size());
+        for (Object row : rows) {
+            final Object[] columns = (Object[]) row;
+            builder.add((Long) columns[0], (String) columns[1], (Integer) columns[2],
+                    (Long) columns[3], (String) columns[4]);
+        }
+
+        // PageableExecutionUtils 와 같은 기준으로 count 쿼리 생략
+        final long total;
+        boolean counted = false;
+        if (pageable.getOffset() == 0 && rows.size() < pageable.getPageSize()) {
+            total = rows.size();
+        } else if (!rows.isEmpty() && rows.size() < pageable.getPageSize()) {
+            total = pageable.getOffset() + rows.size();
+        } else {
+            total = countCache.get(condition, () -> count(condition, memberIds));
+            counted = true;
+        }
+        metrics.recordCount("searchColumnar", condition, counted);
+        return builder.build(pageable.getPageNumber(), pageable.getPageSize(), total);
+    }
+
+    //카운터 쿼리 최적화 - 별도의 쿼리 작성 불필요한 조인 제거.. ex)데이터가 많은 경우
+    // member -> team 은 to-one 이라 left join 이 건수를 바꾸지 않는다
+    // 팀명 조건도 팀 디렉터리에서 찾은 팀 id 로 member.team_id 에 걸기 때문에 조인이 필요 없다
+    // 엔티티 대신 member.id 를 count 해서 deprecated 된 fetchCount() 를 쓰지 않는다
+    JPAQuery<Long> countQuery(MemberSearchCondition condition) {
+        return queryFactory
+                .select(member.id.count())
+                .from(member)
+                .where(
+                        usernameMatches(condition, MemberSearchQueryCache.memberIdsPlaceholderOf(condition)),
+                        teamIdIn(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                );
     }
 
+    long count(MemberSearchCondition condition) {
+        return count(condition, memberIdsOf(condition));
+    }
+
+    private long count(MemberSearchCondition condition, List<Long> memberIds) {
+        if (matchesNothing(condition, memberIds)) {
+            return 0L;
+        }
+        final Object count = countQueries.createQuery(em, condition, memberIds).getSingleResult();
+        return count != null ? ((Number) count).longValue() : 0L;
+    }
+
+    private List<MemberTeamDto> fetchPage(MemberSearchCondition condition, List<Long> memberIds, Pageable pageable) {
+        return fetchPage(condition, memberIds, pageable.getOffset(), pageable.getPageSize());
+    }
+
+    private List<MemberTeamDto> fetchPage(MemberSearchCondition condition, List<Long> memberIds, long offset, int limit) {
+        final List<?> rows = contentQueries.createQuery(em, condition, memberIds)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList();
+        return MemberSearchQueryCache.toMemberTeamDtos(rows);
+    }
+
+    // 키셋(seek) 페이징 - offset 으로 앞 페이지를 스캔해서 버리지 않고 member.id 기준으로 바로 찾아간다
+    // size + 1 건을 조회해서 다음 페이지 존재 여부를 판단하므로 count 쿼리가 필요 없다
     @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        final List<MemberTeamDto> content = queryFactory.select(new QMemberTeamDto(
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchAfter(MemberSearchCondition condition, Long lastMemberId, int size) {
+        final List<Long> memberIds = memberIdsOf(condition);
+        if (matchesNothing(condition, memberIds)) {
+            return new MemberCursorPage(Collections.emptyList(), null, false);
+        }
+        final List<MemberTeamDto> rows = metrics.recordList("searchAfter", condition, () -> queryFactory.select(new QMemberTeamDto(
                 member.id.as("memberId"),
                 member.username,
                 member.age,
@@ -139,55 +432,48 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUserName()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        memberIdGt(lastMemberId),
+                        usernameMatches(condition, memberIds),
+                        teamIdIn(condition.getTeamName()),
+                        andBetween(condition.getAgeGoe(), condition.getAgeLoe())
                 )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();// 컨텐츠용 쿼리, 카운터 쿼리 두번 날린다
+                // member.id 는 유니크하므로 그 자체로 정렬 순서가 확정된다
+                .orderBy(member.id.asc())
+                .limit(size + 1)
+                .fetch());
 
-        //카운터 쿼리 최적화 - 별도의 쿼리 작성 불필요한 조인 제거.. ex)데이터가 많은 경우
-        final JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUserName()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
-
-        //카운터 쿼리 최적화
-        //count 쿼리 생략 가능한 경우 생략해서 처리한다
-        // 페이지 시작이면서 컨텐츠 사이즈가 페이지 사이즈보다 적을 때
-        // 마지막 페이지 일 때 (offset + 컨텐츠 사이즈를 더해서 전체 사이즈 구함)
-        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
-//        return new PageImpl<>(content, pageable, total);
+        final boolean hasNext = rows.size() > size;
+        final List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        final String nextCursor = hasNext
+                ? MemberCursorPage.encodeCursor(content.get(content.size() - 1).getMemberId())
+                : null;
 
+        return new MemberCursorPage(content, nextCursor, hasNext);
     }
 
 
-    private BooleanExpression andBetween(Integer ageGoe, Integer ageLoe) {
-        return ageGoe(ageGoe).and(ageLoe(ageLoe));
-    }
-
-    // Predicate 보다 BooleanExpression를 쓰는게 좋다 (컴포지트 가능)
-    private BooleanExpression usernameEq(String userName) {
-        return hasText(userName) ? member.username.eq(userName) : null;
+    // 인덱스가 준비 전이거나 후보가 너무 많으면 null - like 만으로 찾는다
+    private List<Long> memberIdsOf(MemberSearchCondition condition) {
+        return condition.hasUserNamePattern()
+                ? usernameIndex.candidates(condition.getUserNameMatch(), condition.getUserName())
+                : null;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    // 팀명 -> 팀 id 로 바꿔서 team 조인 없이 member.team_id 로 거른다
+    private BooleanExpression teamIdIn(String teamName) {
+        return hasText(teamName)
+                ? member.team.id.in(MemberSearchQueryCache.teamIdsOf(teamName, teamDirectory))
+                : null;
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    // 나이 범위가 비었거나(ageGoe > ageLoe), 회원명 인덱스 후보가 없거나, 없는 팀명이면 결과가 없으므로 쿼리를 날리지 않는다 (빈 in 절도 만들지 않는다)
+    private boolean matchesNothing(MemberSearchCondition condition, List<Long> memberIds) {
+        return condition.hasEmptyAgeRange()
+                || memberIds != null && memberIds.isEmpty()
+                || hasText(condition.getTeamName()) && teamDirectory.idsOf(condition.getTeamName()).isEmpty();
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    private BooleanExpression memberIdGt(Long lastMemberId) {
+        return lastMemberId != null ? member.id.gt(lastMemberId) : null;
     }
 }
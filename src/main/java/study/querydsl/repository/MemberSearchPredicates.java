@@ -0,0 +1,68 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// 검색 조건 -> where 절 조각
+// 검색, 벌크 수정/삭제, 구간 병렬 조회가 같은 조건을 같은 행 집합으로 해석하도록 한 곳에서 만든다
+// 팀명 조건은 team 별칭을 쓰므로 member.team 을 team 으로 조인한 쿼리에서만 쓴다
+final class MemberSearchPredicates {
+
+    private MemberSearchPredicates() {
+    }
+
+    // 회원명(EXACT/PREFIX/CONTAINS) + 팀명 + 나이 범위 - 조건이 하나도 없으면 null (where 에서 무시된다)
+    // 나이 범위가 빈 조건(ageGoe > ageLoe)은 호출하는 쪽이 hasEmptyAgeRange() 로 먼저 걸러서 쿼리를 날리지 않는다
+    static BooleanExpression searchCondition(MemberSearchCondition condition) {
+        return Expressions.allOf(
+                usernameMatches(condition),
+                teamNameEq(condition.getTeamName()),
+                andBetween(condition.getAgeGoe(), condition.getAgeLoe())
+        );
+    }
+
+    // 나이 범위 - 둘 다 있으면 between 하나로 합치고, 한쪽만 있으면 그쪽만 건다
+    static BooleanExpression andBetween(Integer ageGoe, Integer ageLoe) {
+        if (ageGoe != null && ageLoe != null) {
+            return member.age.between(ageGoe, ageLoe);
+        }
+        return ageGoe != null ? ageGoe(ageGoe) : ageLoe(ageLoe);
+    }
+
+    // Predicate 보다 BooleanExpression를 쓰는게 좋다 (컴포지트 가능)
+    static BooleanExpression usernameEq(String userName) {
+        return hasText(userName) ? member.username.eq(userName) : null;
+    }
+
+    static BooleanExpression usernameMatches(MemberSearchCondition condition) {
+        return usernameMatches(condition, null);
+    }
+
+    // 앞부분/부분 문자열이면 like - 회원명 인덱스 후보가 있으면 member.id in 으로 PK 를 찾고 like 로 확인만 한다
+    static BooleanExpression usernameMatches(MemberSearchCondition condition, List<Long> memberIds) {
+        if (!condition.hasUserNamePattern()) {
+            return usernameEq(condition.getUserName());
+        }
+        final BooleanExpression like = member.username.like(MemberSearchQueryCache.userNamePatternOf(condition));
+        return memberIds != null ? member.id.in(memberIds).and(like) : like;
+    }
+
+    static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
@@ -0,0 +1,257 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.jpa.impl.JPAQuery;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// 검색 조건의 "모양"(userName/teamName/ageGoe/ageLoe 중 어떤 값이 있는지, 회원명을 like 로 거는지, 회원명 인덱스 후보를 쓰는지)별로 JPQL 을 한 번만 만들어 둔다
+// 같은 모양이면 Querydsl 표현식 트리 생성과 JPQL 직렬화를 건너뛰고 파라미터만 바인딩한다
+// JPQL 문자열이 매번 같으므로 하이버네이트 쿼리 플랜 캐시도 항상 히트한다
+class MemberSearchQueryCache {
+
+    // 프로젝션 표현식은 불변이므로 요청마다 만들지 않고 재사용한다
+    static final QMemberTeamDto MEMBER_TEAM_PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName")
+    );
+
+    // 모양별 JPQL 을 만들 때 넣는 자리표시 값 - 직렬화된 쿼리에서 어떤 ?n 이 어떤 필드인지 찾는 데 쓴다
+    private static final String USER_NAME_PLACEHOLDER = "\u0000userName";
+    private static final String TEAM_NAME_PLACEHOLDER = "\u0000teamName";
+    // 회원명 인덱스 후보(member.id in ...)를 쓰는 모양의 회원명 자리표시
+    private static final String USER_NAME_INDEXED_PLACEHOLDER = "\u0000userNameIndexed";
+    private static final String USER_NAME_PATTERN_PLACEHOLDER = "\u0000userNamePattern";
+    private static final Integer AGE_GOE_PLACEHOLDER = Integer.MIN_VALUE + 1;
+    private static final Integer AGE_LOE_PLACEHOLDER = Integer.MIN_VALUE + 2;
+    // in(Collection) 은 원소가 하나면 eq 로 바뀌므로 두 개를 넣어서 in 절 모양을 유지한다
+    private static final List<Long> TEAM_IDS_PLACEHOLDER = List.of(Long.MIN_VALUE + 1, Long.MIN_VALUE + 2);
+    private static final List<Long> MEMBER_IDS_PLACEHOLDER = List.of(Long.MIN_VALUE + 3, Long.MIN_VALUE + 4);
+    // 회원명 후보 id 는 조건이 아니라 호출할 때 넘겨받은 값을 바인딩한다
+    private static final Function<MemberSearchCondition, Object> MEMBER_IDS_BINDING = condition -> {
+        throw new IllegalStateException("회원명 후보 id 는 조건에서 꺼내지 않습니다");
+    };
+
+    // JPQLTemplates 의 like 이스케이프 문자
+    private static final char LIKE_ESCAPE = '!';
+
+    static final int USER_NAME_PATTERN = 1 << 4;
+    static final int MEMBER_IDS = 1 << 5;
+    private static final int SHAPES = 64;
+    private static final Pattern POSITIONAL_PARAMETER = Pattern.compile("\\?(\\d+)");
+
+    private final Function<MemberSearchCondition, JPAQuery<?>> queryBuilder;
+    private final TeamDirectory teamDirectory;
+    private final AtomicReferenceArray<CompiledQuery> compiled = new AtomicReferenceArray<>(SHAPES);
+
+    MemberSearchQueryCache(Function<MemberSearchCondition, JPAQuery<?>> queryBuilder) {
+        this(queryBuilder, null);
+    }
+
+    // 팀명 조건을 teamIdsOf() 로 팀 id 목록으로 바꿔 만드는 쿼리용 - 실행할 때 팀명을 teamDirectory 로 풀어서 바인딩한다
+    MemberSearchQueryCache(Function<MemberSearchCondition, JPAQuery<?>> queryBuilder, TeamDirectory teamDirectory) {
+        this.queryBuilder = queryBuilder;
+        this.teamDirectory = teamDirectory;
+    }
+
+    // 쿼리 빌더에서 팀명 대신 쓸 팀 id 목록 - 모양을 컴파일하는 중(자리표시 팀명)에는 자리표시 목록을 돌려준다
+    static List<Long> teamIdsOf(String teamName, TeamDirectory teamDirectory) {
+        return TEAM_NAME_PLACEHOLDER.equals(teamName) ? TEAM_IDS_PLACEHOLDER : teamDirectory.idsOf(teamName);
+    }
+
+    // 쿼리 빌더에서 회원명 like 에 넘길 패턴 - 모양을 컴파일하는 중에는 자리표시를 돌려준다
+    static String userNamePatternOf(MemberSearchCondition condition) {
+        final String userName = condition.getUserName();
+        if (USER_NAME_PLACEHOLDER.equals(userName) || USER_NAME_INDEXED_PLACEHOLDER.equals(userName)) {
+            return USER_NAME_PATTERN_PLACEHOLDER;
+        }
+        final StringBuilder pattern = new StringBuilder(userName.length() + 2);
+        if (condition.getUserNameMatch() == UsernameMatch.CONTAINS) {
+            pattern.append('%');
+        }
+        for (int i = 0; i < userName.length(); i++) {
+            final char c = userName.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    // 쿼리 빌더에서 member.id in 에 넘길 후보 - 인덱스 모양을 컴파일하는 중에만 자리표시 목록, 그 밖에는 null
+    static List<Long> memberIdsPlaceholderOf(MemberSearchCondition condition) {
+        return USER_NAME_INDEXED_PLACEHOLDER.equals(condition.getUserName()) ? MEMBER_IDS_PLACEHOLDER : null;
+    }
+
+    static List<MemberTeamDto> toMemberTeamDtos(List<?> rows) {
+        final List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(MEMBER_TEAM_PROJECTION.newInstance((Object[]) row));
+        }
+        return result;
+    }
+
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUserName())) shape |= 1;
+        if (hasText(condition.getTeamName())) shape |= 1 << 1;
+        if (condition.getAgeGoe() != null) shape |= 1 << 2;
+        if (condition.getAgeLoe() != null) shape |= 1 << 3;
+        if (condition.hasUserNamePattern()) shape |= USER_NAME_PATTERN;
+        return shape;
+    }
+
+    Query createQuery(EntityManager em, MemberSearchCondition condition) {
+        return createQuery(em, condition, null);
+    }
+
+    // memberIds - 회원명 인덱스가 돌려준 후보, 없으면 null
+    Query createQuery(EntityManager em, MemberSearchCondition condition, List<Long> memberIds) {
+        return get(condition, memberIds != null).createQuery(em, condition, memberIds);
+    }
+
+    CompiledQuery get(MemberSearchCondition condition) {
+        return get(condition, false);
+    }
+
+    CompiledQuery get(MemberSearchCondition condition, boolean withMemberIds) {
+        final int shape = shapeOf(condition) | (withMemberIds ? MEMBER_IDS : 0);
+        CompiledQuery query = compiled.get(shape);
+        if (query == null) {
+            // 동시에 여러 스레드가 컴파일해도 결과가 같으므로 먼저 들어간 값을 쓴다
+            compiled.compareAndSet(shape, null, compile(shape));
+            query = compiled.get(shape);
+        }
+        return query;
+    }
+
+    private CompiledQuery compile(int shape) {
+        final JPAQuery<?> query = queryBuilder.apply(placeholder(shape));
+        final String jpql = query.toString();
+
+        final List<Object> constants = new ArrayList<>();
+        collectConstants(query.getMetadata().getWhere(), constants);
+
+        final List<Function<MemberSearchCondition, Object>> bindings = new ArrayList<>(constants.size());
+        final Map<Object, Function<MemberSearchCondition, Object>> fields = placeholderFields();
+        for (Object constant : constants) {
+            // 조건 필드가 아닌 상수는 쿼리에 고정된 값이므로 그대로 바인딩한다
+            bindings.add(fields.getOrDefault(constant, condition -> constant));
+        }
+
+        final int labels = countLabels(jpql);
+        if (labels != bindings.size()) {
+            throw new IllegalStateException("JPQL 파라미터 수(" + labels + ")와 바인딩 수(" + bindings.size() + ")가 다릅니다: " + jpql);
+        }
+        return new CompiledQuery(jpql, bindings);
+    }
+
+    private static MemberSearchCondition placeholder(int shape) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & 1) != 0) condition.setUserName((shape & MEMBER_IDS) != 0 ? USER_NAME_INDEXED_PLACEHOLDER : USER_NAME_PLACEHOLDER);
+        if ((shape & USER_NAME_PATTERN) != 0) condition.setUserNameMatch(UsernameMatch.PREFIX);
+        if ((shape & 1 << 1) != 0) condition.setTeamName(TEAM_NAME_PLACEHOLDER);
+        if ((shape & 1 << 2) != 0) condition.setAgeGoe(AGE_GOE_PLACEHOLDER);
+        if ((shape & 1 << 3) != 0) condition.setAgeLoe(AGE_LOE_PLACEHOLDER);
+        return condition;
+    }
+
+    private Map<Object, Function<MemberSearchCondition, Object>> placeholderFields() {
+        final Map<Object, Function<MemberSearchCondition, Object>> fields = new HashMap<>();
+        fields.put(USER_NAME_PLACEHOLDER, MemberSearchCondition::getUserName);
+        fields.put(USER_NAME_PATTERN_PLACEHOLDER, MemberSearchQueryCache::userNamePatternOf);
+        fields.put(MEMBER_IDS_PLACEHOLDER, MEMBER_IDS_BINDING);
+        fields.put(TEAM_NAME_PLACEHOLDER, MemberSearchCondition::getTeamName);
+        if (teamDirectory != null) {
+            fields.put(TEAM_IDS_PLACEHOLDER, condition -> teamDirectory.idsOf(condition.getTeamName()));
+        }
+        fields.put(AGE_GOE_PLACEHOLDER, MemberSearchCondition::getAgeGoe);
+        fields.put(AGE_LOE_PLACEHOLDER, MemberSearchCondition::getAgeLoe);
+        return fields;
+    }
+
+    // JPQLSerializer 는 상수를 등장 순서대로 ?1, ?2 ... 로 직렬화하므로 같은 순서(깊이 우선, 왼쪽부터)로 모은다
+    private static void collectConstants(Expression<?> expression, List<Object> constants) {
+        if (expression instanceof Constant) {
+            final Object constant = ((Constant<?>) expression).getConstant();
+            if (!constants.contains(constant)) {
+                constants.add(constant);
+            }
+        } else if (expression instanceof Operation) {
+            for (Expression<?> arg : ((Operation<?>) expression).getArgs()) {
+                collectConstants(arg, constants);
+            }
+        }
+    }
+
+    private static int countLabels(String jpql) {
+        int max = 0;
+        final Matcher matcher = POSITIONAL_PARAMETER.matcher(jpql);
+        while (matcher.find()) {
+            max = Math.max(max, Integer.parseInt(matcher.group(1)));
+        }
+        return max;
+    }
+
+    static final class CompiledQuery {
+        private final String jpql;
+        private final List<Function<MemberSearchCondition, Object>> bindings;
+
+        private CompiledQuery(String jpql, List<Function<MemberSearchCondition, Object>> bindings) {
+            this.jpql = jpql;
+            this.bindings = bindings;
+        }
+
+        String getJpql() {
+            return jpql;
+        }
+
+        List<Object> bindValues(MemberSearchCondition condition) {
+            return bindValues(condition, null);
+        }
+
+        List<Object> bindValues(MemberSearchCondition condition, List<Long> memberIds) {
+            final List<Object> values = new ArrayList<>(bindings.size());
+            for (Function<MemberSearchCondition, Object> binding : bindings) {
+                values.add(binding == MEMBER_IDS_BINDING ? memberIds : binding.apply(condition));
+            }
+            return values;
+        }
+
+        Query createQuery(EntityManager em, MemberSearchCondition condition) {
+            return createQuery(em, condition, null);
+        }
+
+        Query createQuery(EntityManager em, MemberSearchCondition condition, List<Long> memberIds) {
+            final Query query = em.createQuery(jpql);
+            for (int i = 0; i < bindings.size(); i++) {
+                final Function<MemberSearchCondition, Object> binding = bindings.get(i);
+                query.setParameter(i + 1, binding == MEMBER_IDS_BINDING ? memberIds : binding.apply(condition));
+            }
+            return query;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// member/team 테이블을 변경하는 SQL 이 나가면 count 캐시를 비우고 onTableWrite 에 테이블명(member/team)을 알린다
+// queryFactory.update(member)...execute() 같은 벌크 연산은 엔티티 이벤트가 발생하지 않으므로 SQL 단에서 감지한다
+public class MemberWriteStatementInspector implements StatementInspector {
+
+    // use_sql_comments 로 붙는 /* ... */ 주석은 건너뛴다
+    private static final Pattern MEMBER_WRITE = Pattern.compile(
+            "^\\s*(/\\*.*?\\*/\\s*)?(insert\\s+into|update|delete\\s+from|delete)\\s+(member|team)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MemberCountCache countCache;
+    private final Consumer<String> onTableWrite;
+
+    public MemberWriteStatementInspector(MemberCountCache countCache, Consumer<String> onTableWrite) {
+        this.countCache = countCache;
+        this.onTableWrite = onTableWrite;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        final Matcher matcher = MEMBER_WRITE.matcher(sql);
+        if (matcher.find()) {
+            countCache.invalidateAll();
+            final String table = matcher.group(3).toLowerCase(Locale.ROOT);
+            onTableWrite.accept(table);
+            notifyAfterCompletion(table);
+        }
+        return sql;
+    }
+
+    // 쓰기 트랜잭션이 끝나기 전에 다른 스레드가 이전 값을 다시 캐시할 수 있으므로 커밋/롤백 후에 한 번 더 알린다
+    // count 캐시도 같다 - 커밋 전 count(롤백되면 없는 행까지 센 값)가 새 세대로 다시 들어갈 수 있다
+    private void notifyAfterCompletion(String table) {
+        final String key = MemberWriteStatementInspector.class.getName() + "." + table;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                countCache.invalidateAll();
+                onTableWrite.accept(table);
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 팀명 -> 팀 id 목록 캐시
+// 팀은 수가 적고 잘 바뀌지 않으므로 전부 읽어 두고, 검색의 팀명 조건을 member.team.id in (...) 으로 바꿔서 team 조인을 없앤다
+// team 테이블에 쓰기 SQL 이 나가면 MemberWriteStatementInspector 가 invalidate() 를 호출한다 (트랜잭션 종료 후 한 번 더)
+@Component
+public class TeamDirectory {
+
+    private final EntityManager em;
+    // invalidate() 이전에 시작된 조회 결과가 다시 캐시에 들어가지 않도록 세대 번호로 구분한다
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public TeamDirectory(EntityManager em) {
+        this.em = em;
+    }
+
+    // 이름이 같은 팀이 여럿일 수 있으므로 목록, 없는 팀이면 빈 목록
+    public List<Long> idsOf(String teamName) {
+        Snapshot current = snapshot;
+        if (current == null || current.generation != generation.get()) {
+            current = load();
+        }
+        return current.idsByName.getOrDefault(teamName, Collections.emptyList());
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot load() {
+        final long loadGeneration = generation.get();
+        final List<Object[]> rows = em.createQuery("select t.id, t.name from Team t", Object[].class)
+                .getResultList();
+
+        final Map<String, List<Long>> idsByName = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                idsByName.computeIfAbsent((String) row[1], name -> new ArrayList<>(1)).add((Long) row[0]);
+            }
+        }
+        idsByName.replaceAll((name, ids) -> List.copyOf(ids));
+
+        final Snapshot loaded = new Snapshot(loadGeneration, idsByName);
+        if (generation.get() == loadGeneration) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+    private static final class Snapshot {
+        private final long generation;
+        private final Map<String, List<Long>> idsByName;
+
+        private Snapshot(long generation, Map<String, List<Long>> idsByName) {
+            this.generation = generation;
+            this.idsByName = idsByName;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import study.querydsl.entity.Team;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+    // 팀 이름 조회는 쿼리 캐시 사용 - team 테이블이 바뀌면 하이버네이트가 결과를 무효화한다
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Team> findByName(String name);
+}
@@ -0,0 +1,378 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// 팀별 회원 수/나이 합계/최소/최대 - group by 집계 쿼리 없이 메모리 값으로 답한다
+// 커밋된 엔티티 이벤트(회원 저장/수정/삭제, changeTeam 으로 팀이 바뀐 수정 포함)로 증분 갱신하고, 주기적으로 DB 집계와 맞춘다
+// 팀마다 불변 Stats 를 AtomicReference 에 두고 CAS 로 바꾼다 - 같은 팀 변경끼리만 경합하고 네 값이 항상 함께 보인다
+// 최소/최대 나이인 회원이 빠지면 다음 값을 메모리로 알 수 없으므로 그 팀만 (team_id, age) 인덱스로 다시 읽는다
+// 벌크 update/delete 처럼 엔티티 이벤트가 없는 변경은 reconcileAsync() 나 주기 reconcile 로 맞춘다
+@Slf4j
+@Component
+public class TeamStatistics {
+
+    private final EntityManagerFactory emf;
+    private final ConcurrentHashMap<Long, AtomicReference<Stats>> teams = new ConcurrentHashMap<>();
+    private final ExecutorService reconciler;
+    private final Object reconcileLock = new Object();
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private final AtomicBoolean reconcileAgain = new AtomicBoolean();
+    private final Set<Long> pendingTeams = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder reconciles = new LongAdder();
+    private final LongAdder teamRefreshes = new LongAdder();
+    private final LongAdder corrections = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile long reconciledAt;
+
+    public TeamStatistics(EntityManagerFactory emf) {
+        this.emf = emf;
+        this.reconciler = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "team-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    // 팀 id 순 - SQL 없이 팀 수만큼만 돈다
+    public List<TeamStatsDto> getTeamStats() {
+        final List<TeamStatsDto> result = new ArrayList<>(teams.size());
+        teams.forEach((teamId, ref) -> {
+            final Stats stats = ref.get();
+            final boolean empty = stats.count == 0;
+            result.add(new TeamStatsDto(teamId, stats.name, stats.count, stats.sum,
+                    empty ? null : (double) stats.sum / stats.count,
+                    empty ? null : stats.min,
+                    empty ? null : stats.max));
+        });
+        result.sort(Comparator.comparing(TeamStatsDto::getTeamId));
+        return result;
+    }
+
+    // 팀(과 나이 범위)에 속한 회원 수 추정 - 나이는 팀의 최소~최대 사이에 고르게 퍼져 있다고 본다
+    // 첫 reconcile 전이거나 모르는 팀이 있으면 null
+    public Long estimateMembers(List<Long> teamIds, Integer ageGoe, Integer ageLoe) {
+        if (reconciledAt == 0) {
+            return null;
+        }
+        double estimate = 0;
+        for (Long teamId : teamIds) {
+            final AtomicReference<Stats> ref = teams.get(teamId);
+            if (ref == null) {
+                return null;
+            }
+            estimate += ref.get().estimate(ageGoe, ageLoe);
+        }
+        return Math.round(estimate);
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isFor(Team.class)) {
+            onTeamChanged(event);
+        } else if (event.isFor(Member.class)) {
+            onMemberChanged(event);
+        }
+    }
+
+    // 엔티티 이벤트 없이 바뀐 경우 - 뒤에서 DB 집계와 다시 맞춘다
+    public void reconcileAsync() {
+        if (!reconciling.compareAndSet(false, true)) {
+            reconcileAgain.set(true);
+            return;
+        }
+        try {
+            reconciler.execute(() -> {
+                try {
+                    do {
+                        reconcileAgain.set(false);
+                        reconcile();
+                    } while (reconcileAgain.get());
+                } catch (RuntimeException e) {
+                    log.warn("팀 통계 reconcile 실패", e);
+                } finally {
+                    reconciling.set(false);
+                }
+                // 마지막 확인과 플래그 해제 사이에 들어온 요청
+                if (reconcileAgain.get()) {
+                    reconcileAsync();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reconciling.set(false);
+        }
+    }
+
+    // 전체 팀을 DB 집계로 맞춘다 - 시작 직후 한 번, 그 뒤로 reconcile-interval-millis 마다
+    // 읽는 동안 이벤트로 바뀐 팀은 CAS 가 실패하므로 건너뛰고 다음 번에 맞춘다
+    @Scheduled(fixedDelayString = "${team.statistics.reconcile-interval-millis:60000}")
+    public void reconcile() {
+        synchronized (reconcileLock) {
+            final Map<Long, Stats> seen = new HashMap<>();
+            teams.forEach((teamId, ref) -> seen.put(teamId, ref.get()));
+
+            final Map<Long, Stats> loaded = loadAll();
+            loaded.forEach((teamId, stats) -> {
+                final AtomicReference<Stats> ref = teams.putIfAbsent(teamId, new AtomicReference<>(stats));
+                if (ref != null) {
+                    replace(ref, seen.get(teamId), stats);
+                }
+            });
+            // DB 에 없는 팀 - 읽는 동안 새로 생긴 팀은 seen 에 없으므로 남겨 둔다
+            seen.forEach((teamId, stats) -> {
+                final AtomicReference<Stats> ref = teams.get(teamId);
+                if (!loaded.containsKey(teamId) && ref != null && ref.get() == stats) {
+                    teams.remove(teamId, ref);
+                    corrections.increment();
+                }
+            });
+            reconciles.increment();
+            reconciledAt = System.currentTimeMillis();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("teams", teams.size());
+        stats.put("events", events.sum());
+        stats.put("reconciles", reconciles.sum());
+        stats.put("teamRefreshes", teamRefreshes.sum());
+        stats.put("corrections", corrections.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("reconciledAt", reconciledAt);
+        return stats;
+    }
+
+    private void onTeamChanged(EntityChangedEvent event) {
+        final Long teamId = (Long) event.getId();
+        switch (event.getType()) {
+            case INSERT:
+                teams.putIfAbsent(teamId, new AtomicReference<>(Stats.empty((String) event.get("name"))));
+                break;
+            case UPDATE:
+                final String name = (String) event.get("name");
+                teams.computeIfAbsent(teamId, id -> new AtomicReference<>(Stats.empty(name)))
+                        .updateAndGet(stats -> stats.withName(name));
+                break;
+            case DELETE:
+                teams.remove(teamId);
+                break;
+        }
+        events.increment();
+    }
+
+    private void onMemberChanged(EntityChangedEvent event) {
+        // 하이버네이트가 이전 상태를 모르는 수정(분리된 엔티티 update)은 뺄 값을 알 수 없다
+        if (event.getType() == EntityChangedEvent.Type.UPDATE && !event.hasOldState()) {
+            reconcileAsync();
+            return;
+        }
+        final Long oldTeamId = event.getType() == EntityChangedEvent.Type.INSERT ? null : teamIdOf(event.getOld("team"));
+        final Long newTeamId = event.getType() == EntityChangedEvent.Type.DELETE ? null : teamIdOf(event.get("team"));
+        final Integer oldAge = (Integer) event.getOld("age");
+        final Integer newAge = (Integer) event.get("age");
+        if (event.getType() == EntityChangedEvent.Type.UPDATE
+                && Objects.equals(oldTeamId, newTeamId) && Objects.equals(oldAge, newAge)) {
+            return;
+        }
+
+        if (oldTeamId != null) {
+            final Stats removed = stats(oldTeamId).updateAndGet(stats -> stats.minus(oldAge));
+            if (removed.extremaStale) {
+                refreshAsync(oldTeamId);
+            }
+        }
+        if (newTeamId != null) {
+            stats(newTeamId).updateAndGet(stats -> stats.plus(newAge));
+        }
+        events.increment();
+    }
+
+    private AtomicReference<Stats> stats(Long teamId) {
+        return teams.computeIfAbsent(teamId, id -> new AtomicReference<>(Stats.empty(null)));
+    }
+
+    // 연관관계는 프록시일 수 있으므로 초기화하지 않고 식별자만 꺼낸다
+    private Long teamIdOf(Object team) {
+        return team != null ? (Long) emf.getPersistenceUnitUtil().getIdentifier(team) : null;
+    }
+
+    // 한 팀만 다시 읽는다 - 같은 팀이 여러 번 요청돼도 대기 중이면 한 번만 돈다
+    private void refreshAsync(Long teamId) {
+        if (!pendingTeams.add(teamId)) {
+            return;
+        }
+        try {
+            reconciler.execute(() -> {
+                pendingTeams.remove(teamId);
+                try {
+                    refresh(teamId);
+                } catch (RuntimeException e) {
+                    log.warn("팀 통계 갱신 실패 teamId={}", teamId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingTeams.remove(teamId);
+        }
+    }
+
+    private void refresh(Long teamId) {
+        final AtomicReference<Stats> ref = teams.get(teamId);
+        if (ref == null) {
+            return;
+        }
+        final Stats seen = ref.get();
+        final EntityManager em = emf.createEntityManager();
+        try {
+            final Object[] row = em.createQuery(
+                    "select count(m), sum(m.age), min(m.age), max(m.age) from Member m where m.team.id = :teamId", Object[].class)
+                    .setParameter("teamId", teamId)
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .getSingleResult();
+            replace(ref, seen, Stats.of(seen.name, row));
+        } finally {
+            em.close();
+        }
+        teamRefreshes.increment();
+    }
+
+    private void replace(AtomicReference<Stats> ref, Stats seen, Stats loaded) {
+        if (seen == null || !ref.compareAndSet(seen, loaded)) {
+            skipped.increment();
+            return;
+        }
+        if (!seen.sameAs(loaded)) {
+            corrections.increment();
+            log.debug("팀 통계 보정 before={} after={}", seen, loaded);
+        }
+    }
+
+    // 회원이 없는 팀도 0 으로 보이도록 팀 목록과 회원 집계를 따로 읽는다 (team_id 로 묶어서 team 조인 없음)
+    private Map<Long, Stats> loadAll() {
+        final EntityManager em = emf.createEntityManager();
+        try {
+            final Map<Long, Stats> loaded = new HashMap<>();
+            for (Object[] row : em.createQuery("select t.id, t.name from Team t", Object[].class)
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .getResultList()) {
+                loaded.put((Long) row[0], Stats.empty((String) row[1]));
+            }
+            for (Object[] row : em.createQuery(
+                    "select m.team.id, count(m), sum(m.age), min(m.age), max(m.age) from Member m"
+                            + " where m.team is not null group by m.team.id", Object[].class)
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .getResultList()) {
+                final Long teamId = (Long) row[0];
+                final Stats team = loaded.get(teamId);
+                loaded.put(teamId, Stats.of(team != null ? team.name : null, new Object[]{row[1], row[2], row[3], row[4]}));
+            }
+            return loaded;
+        } finally {
+            em.close();
+        }
+    }
+
+    // 바꿀 때마다 새 객체를 만든다 - CAS 는 참조 비교이므로 값이 같아도 다른 변경으로 구분된다
+    private static final class Stats {
+        private final String name;
+        private final long count;
+        private final long sum;
+        private final int min;
+        private final int max;
+        // 최소/최대 나이인 회원이 빠져서 min/max 가 실제보다 넓을 수 있다 (refresh 전까지)
+        private final boolean extremaStale;
+
+        private Stats(String name, long count, long sum, int min, int max, boolean extremaStale) {
+            this.name = name;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.extremaStale = extremaStale;
+        }
+
+        private static Stats empty(String name) {
+            return new Stats(name, 0, 0, 0, 0, false);
+        }
+
+        // {count, sum, min, max}
+        private static Stats of(String name, Object[] row) {
+            final long count = ((Number) row[0]).longValue();
+            if (count == 0) {
+                return empty(name);
+            }
+            return new Stats(name, count, ((Number) row[1]).longValue(),
+                    ((Number) row[2]).intValue(), ((Number) row[3]).intValue(), false);
+        }
+
+        private Stats plus(int age) {
+            if (count == 0) {
+                return new Stats(name, 1, age, age, age, false);
+            }
+            return new Stats(name, count + 1, sum + age, Math.min(min, age), Math.max(max, age), extremaStale);
+        }
+
+        private Stats minus(int age) {
+            if (count <= 1) {
+                return empty(name);
+            }
+            return new Stats(name, count - 1, sum - age, min, max, extremaStale || age <= min || age >= max);
+        }
+
+        private double estimate(Integer ageGoe, Integer ageLoe) {
+            final long from = ageGoe != null ? Math.max(ageGoe, min) : min;
+            final long to = ageLoe != null ? Math.min(ageLoe, max) : max;
+            if (count == 0 || from > to) {
+                return 0;
+            }
+            return count * (to - from + 1.0) / ((long) max - min + 1.0);
+        }
+
+        private Stats withName(String name) {
+            return new Stats(name, count, sum, min, max, extremaStale);
+        }
+
+        private boolean sameAs(Stats other) {
+            return count == other.count && sum == other.sum && min == other.min && max == other.max;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" + name + " count=" + count + " sum=" + sum + " min=" + min + " max=" + max
+                    + (extremaStale ? " stale" : "") + "}";
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// 회원명 앞부분/부분 문자열 검색용 프로세스 내 인덱스 - 조건에 맞는 member id 후보를 돌려준다
+// 기준 스냅샷(정렬된 이름 배열 + 3글자 n-gram 역색인)은 DB 에서 통째로 만들고, 그 뒤의 변경은 엔티티 이벤트로 작은 델타에 쌓아서 같이 본다
+// 후보는 상위집합이면 된다 - 검색 쿼리가 username like 조건을 함께 걸어서 확인하므로 지워졌거나 이름이 바뀐 id 가 섞여도 결과는 맞다
+// 커밋된 변경만 반영되므로 같은 트랜잭션에서 방금 저장한 회원은 후보에 없다
+@Slf4j
+@Component
+public class UsernameIndex {
+
+    private static final int GRAM = 3;
+
+    private final EntityManagerFactory emf;
+    private final int maxCandidates;
+    private final int maxDelta;
+    private final ExecutorService rebuilder;
+
+    private volatile State state;
+    // 재구성 중에 들어온 변경 - 새 스냅샷에는 빠져 있을 수 있으므로 새 델타로 넘긴다 (this 로 동기화)
+    private Delta building;
+    private final Object rebuildLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean rebuildAgain = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder tooMany = new LongAdder();
+    private final LongAdder notReady = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public UsernameIndex(EntityManagerFactory emf,
+                         @Value("${member.username-index.max-candidates:1000}") int maxCandidates,
+                         @Value("${member.username-index.max-delta:10000}") int maxDelta) {
+        this.emf = emf;
+        this.maxCandidates = maxCandidates;
+        this.maxDelta = maxDelta;
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "username-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    // 조건에 맞는 member id 후보 - 맞는 회원이 없으면 빈 목록
+    // 아직 스냅샷이 없거나 후보가 max-candidates 를 넘으면 null (인덱스로 좁히지 않고 SQL like 로만 찾는다)
+    public List<Long> candidates(UsernameMatch match, String text) {
+        final State current = state;
+        if (current == null) {
+            notReady.increment();
+            scheduleRebuild();
+            return null;
+        }
+
+        final Candidates candidates = new Candidates(maxCandidates, current.delta.stale);
+        final boolean complete = match == UsernameMatch.PREFIX
+                ? current.snapshot.prefix(text, candidates)
+                : current.snapshot.contains(text, candidates);
+        if (!complete || !current.delta.matches(match, text, candidates)) {
+            tooMany.increment();
+            return null;
+        }
+        hits.increment();
+        return candidates.ids;
+    }
+
+    // 벌크 update/delete, 네이티브 SQL 처럼 엔티티 이벤트 없이 바뀐 경우 - 기존 스냅샷으로 계속 답하면서 뒤에서 다시 만든다
+    // 엔티티 수정은 onEntityChanged 가 회원명이 바뀐 것만 델타로 반영하므로, 회원명을 바꾸는 벌크/네이티브 쓰기를 하는 쪽이 커밋 후 직접 호출한다
+    public void invalidate() {
+        invalidations.increment();
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!event.isFor(Member.class)) {
+            return;
+        }
+        final String username = event.getType() == EntityChangedEvent.Type.DELETE ? null : (String) event.get("username");
+        if (event.getType() == EntityChangedEvent.Type.UPDATE && event.hasOldState()
+                && Objects.equals(event.getOld("username"), username)) {
+            return;
+        }
+
+        final boolean overflow;
+        synchronized (this) {
+            final State current = state;
+            if (current != null) {
+                current.delta.apply((Long) event.getId(), username);
+            }
+            if (building != null) {
+                building.apply((Long) event.getId(), username);
+            }
+            overflow = current != null && current.delta.size() > maxDelta;
+        }
+        if (overflow) {
+            scheduleRebuild();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        final State current = state;
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("names", current != null ? current.snapshot.names.length : 0);
+        stats.put("members", current != null ? current.snapshot.ids.length : 0);
+        stats.put("grams", current != null ? current.snapshot.postings.size() : 0);
+        stats.put("delta", current != null ? current.delta.size() : 0);
+        stats.put("hits", hits.sum());
+        stats.put("tooMany", tooMany.sum());
+        stats.put("notReady", notReady.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            rebuildAgain.set(true);
+            return;
+        }
+        rebuilder.execute(() -> {
+            try {
+                do {
+                    rebuildAgain.set(false);
+                    rebuild();
+                } while (rebuildAgain.get());
+            } catch (RuntimeException e) {
+                log.warn("회원명 인덱스 재구성 실패", e);
+            } finally {
+                rebuilding.set(false);
+            }
+            // 마지막 확인과 플래그 해제 사이에 들어온 요청
+            if (rebuildAgain.get()) {
+                scheduleRebuild();
+            }
+        });
+    }
+
+    // 재구성이 끝날 때까지 기다린다 - 시작 직후 워밍업, 테스트, 벤치마크용
+    // 재구성은 한 번에 하나만 (building 델타가 하나뿐이다)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            final Delta next = new Delta();
+            synchronized (this) {
+                building = next;
+            }
+            try {
+                final long startedAt = System.nanoTime();
+                final Snapshot snapshot = load();
+                synchronized (this) {
+                    state = new State(snapshot, next);
+                }
+                rebuilds.increment();
+                log.info("회원명 인덱스 재구성 members={} names={} grams={} {}ms", snapshot.ids.length, snapshot.names.length,
+                        snapshot.postings.size(), (System.nanoTime() - startedAt) / 1_000_000);
+            } finally {
+                synchronized (this) {
+                    building = null;
+                }
+            }
+        }
+    }
+
+    // 엔티티가 아닌 (id, username) 만 커서로 읽는다 - 영속성 컨텍스트에 회원 엔티티가 쌓이지 않는다
+    private Snapshot load() {
+        final List<Row> rows = new ArrayList<>();
+        final EntityManager em = emf.createEntityManager();
+        try (Stream<Object[]> stream = em.createQuery("select m.id, m.username from Member m", Object[].class)
+                .setHint(QueryHints.FETCH_SIZE, 10_000)
+                .setHint(QueryHints.READ_ONLY, true)
+                .getResultStream()) {
+            stream.forEach(row -> {
+                if (row[1] != null) {
+                    rows.add(new Row((Long) row[0], (String) row[1]));
+                }
+            });
+        } finally {
+            em.close();
+        }
+        return Snapshot.of(rows);
+    }
+
+    private static long gramOf(String text, int from) {
+        return (long) text.charAt(from) << 32 | (long) text.charAt(from + 1) << 16 | text.charAt(from + 2);
+    }
+
+    private static final class Row {
+        private final long id;
+        private final String username;
+
+        private Row(long id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+    }
+
+    private static final class State {
+        private final Snapshot snapshot;
+        private final Delta delta;
+
+        private State(Snapshot snapshot, Delta delta) {
+            this.snapshot = snapshot;
+            this.delta = delta;
+        }
+    }
+
+    // 불변 - 이름은 정렬해서 중복 없이, 이름 i 의 id 는 ids[firstId[i]] ~ ids[firstId[i + 1] - 1]
+    private static final class Snapshot {
+        private final String[] names;
+        private final int[] firstId;
+        private final long[] ids;
+        // 3글자 조각 -> 그 조각을 가진 이름 순번 (오름차순)
+        private final Map<Long, int[]> postings;
+
+        private Snapshot(String[] names, int[] firstId, long[] ids, Map<Long, int[]> postings) {
+            this.names = names;
+            this.firstId = firstId;
+            this.ids = ids;
+            this.postings = postings;
+        }
+
+        private static Snapshot of(List<Row> rows) {
+            rows.sort(Comparator.comparing((Row row) -> row.username).thenComparingLong(row -> row.id));
+
+            final List<String> names = new ArrayList<>();
+            final int[] firstId = new int[rows.size() + 1];
+            final long[] ids = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                final Row row = rows.get(i);
+                if (names.isEmpty() || !names.get(names.size() - 1).equals(row.username)) {
+                    firstId[names.size()] = i;
+                    names.add(row.username);
+                }
+                ids[i] = row.id;
+            }
+            firstId[names.size()] = rows.size();
+
+            final Map<Long, IntList> building = new HashMap<>();
+            for (int ordinal = 0; ordinal < names.size(); ordinal++) {
+                final String name = names.get(ordinal);
+                for (int from = 0; from + GRAM <= name.length(); from++) {
+                    building.computeIfAbsent(gramOf(name, from), gram -> new IntList()).addOnce(ordinal);
+                }
+            }
+            final Map<Long, int[]> postings = new HashMap<>(building.size() * 2);
+            building.forEach((gram, ordinals) -> postings.put(gram, ordinals.toArray()));
+
+            return new Snapshot(names.toArray(new String[0]), Arrays.copyOf(firstId, names.size() + 1), ids, postings);
+        }
+
+        // 정렬돼 있으므로 이분 탐색으로 시작 위치를 찾고 앞부분이 다를 때까지 읽는다
+        private boolean prefix(String text, Candidates candidates) {
+            final int found = Arrays.binarySearch(names, text);
+            for (int ordinal = found >= 0 ? found : -(found + 1);
+                 ordinal < names.length && names[ordinal].startsWith(text); ordinal++) {
+                if (!candidates.add(ids, firstId[ordinal], firstId[ordinal + 1])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 검색어의 3글자 조각을 모두 가진 이름만 (가장 짧은 목록부터 교집합) 실제로 포함하는지 확인한다
+        // 3글자보다 짧은 검색어는 이름 배열을 훑는다 (중복 없는 이름만 보므로 회원 수보다 적다)
+        private boolean contains(String text, Candidates candidates) {
+            if (text.length() < GRAM) {
+                for (int ordinal = 0; ordinal < names.length; ordinal++) {
+                    if (names[ordinal].contains(text) && !candidates.add(ids, firstId[ordinal], firstId[ordinal + 1])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            final List<int[]> lists = new ArrayList<>();
+            for (int from = 0; from + GRAM <= text.length(); from++) {
+                final int[] ordinals = postings.get(gramOf(text, from));
+                if (ordinals == null) {
+                    return true;
+                }
+                lists.add(ordinals);
+            }
+            lists.sort(Comparator.comparingInt(ordinals -> ordinals.length));
+
+            for (int ordinal : lists.get(0)) {
+                if (inAll(lists, ordinal) && names[ordinal].contains(text)
+                        && !candidates.add(ids, firstId[ordinal], firstId[ordinal + 1])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean inAll(List<int[]> lists, int ordinal) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (Arrays.binarySearch(lists.get(i), ordinal) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // 스냅샷 이후의 변경 - stale 에 든 id 는 스냅샷 쪽 항목을 무시하고 upserts 의 현재 이름으로 본다
+    private static final class Delta {
+        private final Map<Long, String> upserts = new ConcurrentHashMap<>();
+        private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+
+        // username 이 null 이면 삭제
+        private void apply(Long id, String username) {
+            stale.add(id);
+            if (username != null) {
+                upserts.put(id, username);
+            } else {
+                upserts.remove(id);
+            }
+        }
+
+        private int size() {
+            return stale.size();
+        }
+
+        private boolean matches(UsernameMatch match, String text, Candidates candidates) {
+            for (Map.Entry<Long, String> upsert : upserts.entrySet()) {
+                final String username = upsert.getValue();
+                final boolean matched = match == UsernameMatch.PREFIX ? username.startsWith(text) : username.contains(text);
+                if (matched && !candidates.add(upsert.getKey())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // 상한을 넘으면 add 가 false 를 돌려주고 더 모으지 않는다
+    private static final class Candidates {
+        private final int limit;
+        private final Set<Long> stale;
+        private final List<Long> ids = new ArrayList<>();
+
+        private Candidates(int limit, Set<Long> stale) {
+            this.limit = limit;
+            this.stale = stale;
+        }
+
+        private boolean add(long[] source, int from, int to) {
+            final boolean checkStale = !stale.isEmpty();
+            for (int i = from; i < to; i++) {
+                if ((!checkStale || !stale.contains(source[i])) && !add(source[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean add(long id) {
+            ids.add(id);
+            return ids.size() <= limit;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        // 순번을 오름차순으로 넣으므로 마지막 값만 보면 중복을 거를 수 있다
+        private void addOnce(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
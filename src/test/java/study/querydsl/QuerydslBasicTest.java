@@ -16,9 +16,12 @@ import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.MaxStatements;
+import study.querydsl.config.StatementCountExtension;
 import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.UserDto;
@@ -39,6 +42,8 @@ import static study.querydsl.entity.QTeam.*;
 
 @SpringBootTest
 @Transactional
+@ExtendWith(StatementCountExtension.class)
+@MaxStatements(1)
 public class QuerydslBasicTest {
 
     @Autowired
@@ -128,6 +133,7 @@ public class QuerydslBasicTest {
     }
 
     @Test
+    @MaxStatements(3) // fetchResults() = content + count, fetchCount() = count
     public void resultFetch(){
 //        final List<Member> fetch = jpaQueryFactory
 //                .selectFrom(member)
@@ -191,6 +197,7 @@ public class QuerydslBasicTest {
     }
 
     @Test
+    @MaxStatements(2) // fetchResults() 는 count 쿼리를 같이 날린다
     public void paging2(){
         final QueryResults<Member> queryResults = jpaQueryFactory
                 .selectFrom(member)
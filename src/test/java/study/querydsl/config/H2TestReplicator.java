@@ -0,0 +1,56 @@
+package study.querydsl.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 테스트용 복제기 - 프라이머리 H2 를 SCRIPT 로 덤프해서 레플리카에 그대로 다시 만든다
+// 마지막 동기화 이후 지난 시간을 복제 지연으로 보고한다
+class H2TestReplicator implements ReplicaLagProbe {
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final Map<String, Long> syncedAt = new ConcurrentHashMap<>();
+
+    H2TestReplicator(DataSource primary, Map<String, DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+    void syncAll() {
+        replicas.keySet().forEach(this::sync);
+    }
+
+    void sync(String replicaName) {
+        final File script = createTempScript();
+        try {
+            final String path = script.getAbsolutePath().replace('\\', '/');
+            new JdbcTemplate(primary).execute("SCRIPT TO '" + path + "'");
+            final JdbcTemplate replica = new JdbcTemplate(replicas.get(replicaName));
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + path + "'");
+            syncedAt.put(replicaName, System.currentTimeMillis());
+        } finally {
+            script.delete();
+        }
+    }
+
+    @Override
+    public long lagMillis(String replicaName) {
+        final Long lastSync = syncedAt.get(replicaName);
+        return lastSync == null ? Long.MAX_VALUE : System.currentTimeMillis() - lastSync;
+    }
+
+    private static File createTempScript() {
+        try {
+            return File.createTempFile("h2-replica", ".sql");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 테스트 메서드 본문(@BeforeEach 제외)에서 실행할 수 있는 SQL 수 상한.
+ * 기본은 select 만 센다 - 테스트 데이터 insert 는 flush 시점에 따라 달라지기 때문이다.
+ * 클래스에 붙이면 모든 테스트의 기본값이 되고, 메서드에 붙인 값이 우선한다.
+ * {@link StatementCountExtension} 과 함께 쓴다.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MaxStatements {
+
+    int value();
+
+    boolean includeWrites() default false;
+}
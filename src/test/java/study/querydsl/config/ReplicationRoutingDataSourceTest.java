@@ -0,0 +1,127 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 프라이머리 1 + 레플리카 2 개의 H2 인스턴스로 라우팅을 확인한다
+// 각 DB 의 db_name 테이블에 자기 이름을 넣어두고 어느 DB 에서 읽었는지 확인한다 (레플리카는 복제 후 이름만 바꾼다)
+public class ReplicationRoutingDataSourceTest {
+
+    DataSource primary;
+    Map<String, DataSource> replicas;
+    H2TestReplicator replicator;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readOnlyTx;
+    TransactionTemplate writeTx;
+
+    @BeforeEach
+    public void before(){
+        primary = h2("primary");
+        replicas = new LinkedHashMap<>();
+        replicas.put("replica1", h2("replica1"));
+        replicas.put("replica2", h2("replica2"));
+        replicator = new H2TestReplicator(primary, replicas);
+
+        final JdbcTemplate primaryJdbc = new JdbcTemplate(primary);
+        primaryJdbc.execute("create table db_name (name varchar(20))");
+        primaryJdbc.execute("insert into db_name values ('primary')");
+        primaryJdbc.execute("create table member (id bigint primary key, username varchar(20))");
+        replicator.syncAll();
+        replicas.forEach((name, replica) -> new JdbcTemplate(replica).update("update db_name set name = ?", name));
+
+        ReplicationRoutingDataSource.clearStickiness();
+    }
+
+    @AfterEach
+    public void after(){
+        ReplicationRoutingDataSource.clearStickiness();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        replicas.values().forEach(replica -> new JdbcTemplate(replica).execute("DROP ALL OBJECTS"));
+    }
+
+    @Test
+    public void readOnlyTransactionsAreSpreadOverReplicas(){
+        setUpRouting(1000, 0);
+
+        assertThat(readDbName()).isEqualTo("replica1");
+        assertThat(readDbName()).isEqualTo("replica2");
+        assertThat(readDbName()).isEqualTo("replica1");
+        assertThat(writeTx.execute(status -> jdbcTemplate.queryForObject("select name from db_name", String.class)))
+                .isEqualTo("primary");
+    }
+
+    @Test
+    public void laggingReplicaIsSkipped(){
+        replicas.put("replica3", h2("replica3"));
+        // replica3 는 한 번도 동기화되지 않았으므로 지연이 무한대
+        setUpRouting(1000, 0);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(readDbName()).isIn("replica1", "replica2");
+        }
+    }
+
+    @Test
+    public void allReplicasLaggingFallsBackToPrimary(){
+        setUpRouting(-1, 0);
+
+        assertThat(readDbName()).isEqualTo("primary");
+    }
+
+    @Test
+    public void readsAfterWriteStickToPrimary(){
+        setUpRouting(1000, 60_000);
+
+        writeTx.executeWithoutResult(status -> jdbcTemplate.update("insert into member values (1, 'member1')"));
+
+        assertThat(readOnlyTx.execute(status ->
+                jdbcTemplate.queryForObject("select count(*) from member", Long.class))).isEqualTo(1);
+        assertThat(readDbName()).isEqualTo("primary");
+    }
+
+    @Test
+    public void replicaSeesWritesAfterReplication(){
+        setUpRouting(1000, 0);
+
+        writeTx.executeWithoutResult(status -> jdbcTemplate.update("insert into member values (1, 'member1')"));
+        assertThat(readOnlyTx.execute(status ->
+                jdbcTemplate.queryForObject("select count(*) from member", Long.class))).isZero();
+
+        replicator.syncAll();
+        assertThat(readOnlyTx.execute(status ->
+                jdbcTemplate.queryForObject("select count(*) from member", Long.class))).isEqualTo(1);
+    }
+
+    private void setUpRouting(long maxLagMillis, long stickyMillis) {
+        final ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(
+                primary, replicas, replicator, maxLagMillis, stickyMillis);
+        routing.afterPropertiesSet();
+        final DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        writeTx = new TransactionTemplate(transactionManager);
+    }
+
+    private String readDbName() {
+        return readOnlyTx.execute(status -> jdbcTemplate.queryForObject("select name from db_name", String.class));
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
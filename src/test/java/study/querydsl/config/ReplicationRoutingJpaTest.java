@@ -0,0 +1,102 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// JPA(JpaTransactionManager + LazyConnectionDataSourceProxy) 경로에서도 @Transactional(readOnly = true) 가 레플리카로 가는지 확인한다
+// 레플리카는 H2TestReplicator 로 직접 동기화하므로, 동기화 전 쓰기는 프라이머리에만 보이고 읽기 전용 검색에는 안 보인다
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicationRoutingJpaTest.PRIMARY_URL,
+        "app.datasource.routing.enabled=true",
+        "app.datasource.routing.max-lag-millis=600000",
+        "app.datasource.routing.sticky-millis=0",
+        "app.datasource.routing.replicas[0].name=replica1",
+        "app.datasource.routing.replicas[0].url=" + ReplicationRoutingJpaTest.REPLICA_URL,
+        "app.datasource.routing.replicas[0].username=sa",
+        "app.datasource.routing.replicas[0].password="
+})
+public class ReplicationRoutingJpaTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routingPrimary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routingReplica1;DB_CLOSE_DELAY=-1";
+
+    // 동기화 전에는 레플리카 지연이 무한대라서 컨텍스트가 뜨는 동안의 읽기는 프라이머리로 간다
+    @TestConfiguration
+    static class ReplicatorConfig {
+
+        @Bean
+        H2TestReplicator h2TestReplicator() {
+            return new H2TestReplicator(h2(PRIMARY_URL), Map.of("replica1", h2(REPLICA_URL)));
+        }
+    }
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    H2TestReplicator replicator;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        replicator.syncAll();
+        ReplicationRoutingDataSource.clearStickiness();
+    }
+
+    @AfterEach
+    public void after(){
+        ReplicationRoutingDataSource.clearStickiness();
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void readOnlySearchHitsReplicaAndWriteHitsPrimary(){
+        tx.executeWithoutResult(status -> em.persist(new Member("routed", 10)));
+
+        assertThat(new JdbcTemplate(h2(PRIMARY_URL))
+                .queryForObject("select count(*) from member where username = 'routed'", Long.class)).isEqualTo(1);
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName("routed");
+        assertThat(memberJpaRepository.search(condition)).isEmpty();
+
+        replicator.syncAll();
+        assertThat(memberJpaRepository.search(condition))
+                .extracting(MemberTeamDto::getUsername)
+                .containsExactly("routed");
+    }
+
+    private static DataSource h2(String url) {
+        return new DriverManagerDataSource(url, "sa", "");
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 기준을 0ms 로 내려서 모든 문장을 느린 문장으로 기록한다
+@SpringBootTest(properties = {
+        "app.sql-log.slow-threshold-millis=0",
+        "app.sql-log.sample-rate=0",
+        "app.sql-log.slow-buffer-size=3"
+})
+@Transactional
+public class SampledStatementLoggerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    SampledStatementLogger sampledStatementLogger;
+
+    @Test
+    public void slowQueryKeepsBindValuesAndShape(){
+        em.persist(new Member("member1", 10));
+        em.flush();
+
+        em.createQuery("select m from Member m where m.username = :username and m.age >= :age", Member.class)
+                .setParameter("username", "member1")
+                .setParameter("age", 10)
+                .getResultList();
+
+        final SampledStatementLogger.SlowQuery latest = sampledStatementLogger.getSlowQueries().get(0);
+        assertThat(latest.getSql()).contains("select");
+        assertThat(latest.getShape()).contains("username=?").contains("age>=?");
+        assertThat(latest.getBinds()).containsExactly(List.of("member1", "10"));
+    }
+
+    @Test
+    public void ringBufferKeepsOnlyLatest(){
+        for (int age = 0; age < 5; age++) {
+            em.createQuery("select m from Member m where m.age = :age", Member.class)
+                    .setParameter("age", age)
+                    .getResultList();
+        }
+
+        final List<SampledStatementLogger.SlowQuery> slowQueries = sampledStatementLogger.getSlowQueries();
+        assertThat(slowQueries).hasSize(3);
+        assertThat(slowQueries).extracting(slowQuery -> slowQuery.getBinds().get(0).get(0))
+                .containsExactly("4", "3", "2");
+        assertThat(sampledStatementLogger.getSlowCount()).isGreaterThanOrEqualTo(5);
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.opentest4j.AssertionFailedError;
+
+import java.util.Optional;
+
+// 테스트 메서드 실행 구간을 StatementCounter 범위로 잡고 @MaxStatements 예산을 넘으면 실패시킨다
+// @BeforeEach 의 데이터 준비와 테스트 트랜잭션 롤백은 세지 않는다
+public class StatementCountExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(StatementCountExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        final String name = context.getRequiredTestClass().getSimpleName() + "." + context.getRequiredTestMethod().getName();
+        context.getStore(NAMESPACE).put(context.getUniqueId(),
+                StatementCounter.open(name, StatementCounter.DEFAULT_REPEAT_THRESHOLD));
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        final StatementCounter.Scope scope = context.getStore(NAMESPACE)
+                .remove(context.getUniqueId(), StatementCounter.Scope.class);
+        if (scope == null) {
+            return;
+        }
+        scope.close();
+
+        final Optional<MaxStatements> budget = budgetOf(context);
+        if (budget.isEmpty()) {
+            return;
+        }
+        final long counted = budget.get().includeWrites() ? scope.getTotal() : scope.getSelects();
+        if (counted > budget.get().value()) {
+            throw new AssertionFailedError(String.format("%s: SQL %d개 실행 (예산 %d, selects=%d, total=%d) 반복된 문장=%s",
+                    scope.getName(), counted, budget.get().value(), scope.getSelects(), scope.getTotal(),
+                    scope.getRepeated()));
+        }
+    }
+
+    private static Optional<MaxStatements> budgetOf(ExtensionContext context) {
+        final Optional<MaxStatements> onMethod = AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), MaxStatements.class);
+        return onMethod.isPresent()
+                ? onMethod
+                : AnnotationSupport.findAnnotation(context.getRequiredTestClass(), MaxStatements.class);
+    }
+}
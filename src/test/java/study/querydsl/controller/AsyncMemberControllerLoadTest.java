@@ -0,0 +1,103 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 회원 검색으로 스레드풀을 포화시킨 상태에서 /hello 지연시간 분포를 잰다 (gradle loadTest)
+// 톰캣 스레드를 20 개로 줄여서 동기 처리였다면 /hello 가 밀리는 상황을 만든다
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=20",
+        "member.async.queue-capacity=20",
+        "app.sql-log.sample-rate=0"
+})
+public class AsyncMemberControllerLoadTest {
+
+    private static final int SEARCH_CLIENTS = 100;
+    private static final int HELLO_REQUESTS = 500;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void before(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                        "select x + 2000000000, concat('load', x), mod(x, 100), null from system_range(1, 200000)")
+                        .executeUpdate());
+    }
+
+    @AfterEach
+    public void after(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createNativeQuery("delete from member where member_id > 2000000000").executeUpdate());
+    }
+
+    @Test
+    public void helloStaysFastWhileMemberSearchIsSaturated() throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final ExecutorService clients = Executors.newFixedThreadPool(SEARCH_CLIENTS);
+        for (int i = 0; i < SEARCH_CLIENTS; i++) {
+            clients.execute(() -> {
+                while (running.get()) {
+                    final ResponseEntity<String> response =
+                            restTemplate.getForEntity("/async/v1/members?ageGoe=10", String.class);
+                    if (response.getStatusCodeValue() == 503) {
+                        rejected.incrementAndGet();
+                    } else {
+                        ok.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        Thread.sleep(1000);
+        final List<Long> latencies = new ArrayList<>(HELLO_REQUESTS);
+        for (int i = 0; i < HELLO_REQUESTS; i++) {
+            final long startedAt = System.nanoTime();
+            assertThat(restTemplate.getForObject("/hello", String.class)).isEqualTo("hello");
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+
+        running.set(false);
+        clients.shutdown();
+        clients.awaitTermination(30, TimeUnit.SECONDS);
+
+        Collections.sort(latencies);
+        final long p50 = latencies.get(HELLO_REQUESTS / 2);
+        final long p99 = latencies.get(HELLO_REQUESTS * 99 / 100);
+        System.out.printf("/hello p50=%dms p99=%dms max=%dms, member search ok=%d rejected(503)=%d%n",
+                p50, p99, latencies.get(HELLO_REQUESTS - 1), ok.get(), rejected.get());
+
+        assertThat(rejected.get()).isPositive();
+        assertThat(p99).isLessThan(200);
+    }
+}
@@ -0,0 +1,156 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 내보내기는 읽기 전용 트랜잭션에서 커서로 읽으므로 테스트 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MemberExportTest {
+
+    // 내보내는 동안 늘어난 힙(gc 후 사용량)이 이 값을 넘으면 결과 건수에 비례해서 메모리를 잡고 있는 것으로 본다
+    private static final long MAX_RETAINED_GROWTH_BYTES = 32L * 1024 * 1024;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamAId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        teamAId = tx.execute(status -> {
+            final Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member,2", 20, teamA));
+            em.persist(new Member("member3", 30));
+            return teamA.getId();
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        final String body = mockMvc.perform(get("/v1/members/export").param("teamName", "teamA"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        final String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("username").asText()).isEqualTo("member1");
+        assertThat(objectMapper.readTree(lines[1]).get("teamName").asText()).isEqualTo("teamA");
+    }
+
+    // 헤더 한 줄 + 회원마다 한 줄, 쉼표가 들어간 값은 따옴표로 감싼다
+    @Test
+    public void exportCsv() throws Exception {
+        final String body = mockMvc.perform(get("/v1/members/export").param("format", "csv").param("fetchSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(body.split("\n")).containsExactlyInAnyOrder(
+                "memberId,username,age,teamId,teamName",
+                idOf("member1") + ",member1,10," + teamAId + ",teamA",
+                idOf("member,2") + ",\"member,2\",20," + teamAId + ",teamA",
+                idOf("member3") + ",member3,30,,");
+    }
+
+    @Test
+    public void unknownFormatIsBadRequest() throws Exception {
+        mockMvc.perform(get("/v1/members/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // 대용량은 -Dexport.rows 로 지정 (gradle largeExportTest 는 100만 건을 파일 H2 에 넣고 작은 힙으로 실행)
+    // 전체 힙 크기만 보면 데이터셋 때문에 터지는지 구분이 안 되므로, 내보내는 동안 gc 후에도 남는 힙이 늘지 않는지 본다
+    @Test
+    public void exportRetainsConstantHeap(){
+        final long rows = Long.getLong("export.rows", 10_000L);
+        final long seedChunk = 100_000;
+        for (long from = 1; from <= rows; from += seedChunk) {
+            final long to = Math.min(from + seedChunk - 1, rows);
+            tx.executeWithoutResult(status -> em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                    "select x + 1000000000, concat('bulk', x), mod(x, 100), ? from system_range(?, ?)")
+                    .setParameter(1, teamAId)
+                    .setParameter(2, from)
+                    .setParameter(3, to)
+                    .executeUpdate());
+        }
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final long sampleInterval = Math.max(1, rows / 10);
+        final long baseline = retainedHeap(memory);
+        final long[] maxRetained = {baseline};
+
+        final MemberExportWriter writer = new MemberExportWriter(Writer.nullWriter(), MemberExportWriter.Format.NDJSON, objectMapper, 500);
+        final long exported = memberJpaRepository.export(condition, 500, 500, dto -> {
+            writer.accept(dto);
+            if (dto.getMemberId() % sampleInterval == 0) {
+                maxRetained[0] = Math.max(maxRetained[0], retainedHeap(memory));
+            }
+        });
+
+        // 앞에서 넣은 teamA 회원 2명 포함
+        assertThat(exported).isEqualTo(rows + 2);
+        assertThat(maxRetained[0] - baseline).isLessThan(MAX_RETAINED_GROWTH_BYTES);
+    }
+
+    private static long retainedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private Long idOf(String username) {
+        return tx.execute(status -> em.createQuery("select m.id from Member m where m.username = :username", Long.class)
+                .setParameter("username", username)
+                .getSingleResult());
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberImportResult;
+import study.querydsl.dto.MemberImportRow;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 적재는 배치마다 별도 트랜잭션으로 커밋되므로 @Transactional 롤백 대신 직접 데이터를 지운다
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MemberImportTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> em.persist(new Team("teamA")));
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void importMembersTest(){
+        final List<MemberImportRow> rows = IntStream.range(0, 250)
+                .mapToObj(i -> new MemberImportRow("import" + i, i % 100, i % 3 == 0 ? null : "team" + (char) ('A' + i % 3 - 1)))
+                .collect(Collectors.toList());
+
+        final MemberImportResult result = memberJpaRepository.importMembers(rows.iterator(), 100);
+
+        assertThat(result.isFailed()).isFalse();
+        assertThat(result.getRows()).isEqualTo(250);
+        // teamA 는 이미 있으므로 teamB 만 새로 만든다
+        assertThat(result.getTeamsCreated()).isEqualTo(1);
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        assertThat(memberJpaRepository.search(condition)).hasSize((int) IntStream.range(0, 250).filter(i -> i % 3 == 1).count());
+        // changeTeam 으로 걸었으므로 다른 세션에서 읽은 team.members 에도 보인다
+        assertThat(tx.execute(status -> em.createQuery("select t from Team t where t.name = 'teamA'", Team.class)
+                .getSingleResult().getMembers().size())).isEqualTo(83);
+    }
+
+    // 세 번째 배치에서 insert 가 실패해도 앞의 두 배치는 커밋된 채로 남고, 실패한 배치의 첫 행부터 다시 올리면 된다
+    @Test
+    public void failedBatchKeepsCommittedBatches(){
+        final List<MemberImportRow> rows = IntStream.range(0, 250)
+                .mapToObj(i -> {
+                    // username 컬럼(varchar 255)보다 긴 값
+                    final MemberImportRow row = new MemberImportRow(i == 230 ? "x".repeat(300) : "import" + i, 10, "teamA");
+                    row.setLine(i + 1);
+                    return row;
+                })
+                .collect(Collectors.toList());
+
+        final MemberImportResult result = memberJpaRepository.importMembers(rows.iterator(), 100);
+
+        assertThat(result.isFailed()).isTrue();
+        assertThat(result.getRows()).isEqualTo(200);
+        assertThat(result.getFailedOffset()).isEqualTo(200);
+        assertThat(result.getFailedLine()).isEqualTo(201);
+        assertThat(countMembers()).isEqualTo(200);
+    }
+
+    // 읽을 수 없는 줄 바로 앞까지 적재하고 그 줄 번호와 행 위치를 400 으로 돌려준다
+    @Test
+    public void unreadableLineIsReportedWithLineAndOffset() throws Exception {
+        final String csv = "username,age,teamName\n"
+                + "member1,10,teamA\n"
+                + "member2,20,teamA\n"
+                + "\n"
+                + "member3,abc,teamA\n"
+                + "member4,40,teamA\n";
+
+        final String body = mockMvc.perform(post("/v1/members/import")
+                        .param("format", "csv")
+                        .param("batchSize", "1")
+                        .content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        final JsonNode result = objectMapper.readTree(body);
+        assertThat(result.get("rows").asLong()).isEqualTo(2);
+        assertThat(result.get("failedOffset").asLong()).isEqualTo(2);
+        assertThat(result.get("failedLine").asLong()).isEqualTo(5);
+        assertThat(result.get("error").asText()).contains("5번째 줄");
+        assertThat(countMembers()).isEqualTo(2);
+    }
+
+    private long countMembers() {
+        return tx.execute(status -> em.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void hitSkipsBodyAndReturnsSameBytes() throws IOException {
+        final MemberResponseCache cache = new MemberResponseCache(objectMapper, true, 64 * 1024, 16, 8 * 1024, 4);
+        final AtomicInteger calls = new AtomicInteger();
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        final MockHttpServletResponse miss = serve(cache, "v3", condition, 0, calls, List.of("member1", "member2"));
+        final MockHttpServletResponse hit = serve(cache, "v3", condition, 0, calls, List.of("changed"));
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(miss.getHeader(MemberResponseCache.CACHE_HEADER)).isEqualTo("MISS");
+        assertThat(hit.getHeader(MemberResponseCache.CACHE_HEADER)).isEqualTo("HIT");
+        assertThat(hit.getContentAsByteArray()).isEqualTo(miss.getContentAsByteArray());
+        assertThat(hit.getContentAsString()).isEqualTo("[\"member1\",\"member2\"]");
+    }
+
+    // 빈 문자열 조건은 조건 없음과 같은 키
+    @Test
+    public void blankConditionSharesKeyWithEmptyCondition() throws IOException {
+        final MemberResponseCache cache = new MemberResponseCache(objectMapper, true, 64 * 1024, 16, 8 * 1024, 4);
+        final AtomicInteger calls = new AtomicInteger();
+        final MemberSearchCondition blank = new MemberSearchCondition();
+        blank.setUserName(" ");
+
+        serve(cache, "v2", new MemberSearchCondition(), 0, calls, List.of("a"));
+        serve(cache, "v2", blank, 0, calls, List.of("a"));
+        serve(cache, "v3", blank, 0, calls, List.of("a"));
+
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void memberChangeInvalidatesEverything() throws IOException {
+        final MemberResponseCache cache = new MemberResponseCache(objectMapper, true, 64 * 1024, 16, 8 * 1024, 4);
+        final AtomicInteger calls = new AtomicInteger();
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        serve(cache, "v2", condition, 0, calls, List.of("before"));
+        cache.onEntityChanged(new EntityChangedEvent(Member.class, 1L, EntityChangedEvent.Type.UPDATE,
+                new String[]{"age"}, new Object[]{20}, new Object[]{10}));
+        final MockHttpServletResponse after = serve(cache, "v2", condition, 0, calls, List.of("after"));
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(after.getContentAsString()).isEqualTo("[\"after\"]");
+        assertThat(cache.getStats().get("invalidations")).isEqualTo(1L);
+    }
+
+    // 예산(블록 수)을 넘으면 가장 오래 안 쓴 항목부터 내보낸다
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedWithinBudget() throws IOException {
+        // 16바이트 블록 4개 - 항목 하나가 블록 2개를 쓰므로 두 개까지만 들어간다
+        final MemberResponseCache cache = new MemberResponseCache(objectMapper, true, 64, 16, 64, 4);
+        final AtomicInteger calls = new AtomicInteger();
+        final List<String> body = List.of("0123456789", "abcdef");
+
+        serve(cache, "v2", conditionFor("a"), 0, calls, body);
+        serve(cache, "v2", conditionFor("b"), 0, calls, body);
+        serve(cache, "v2", conditionFor("a"), 0, calls, body);
+        serve(cache, "v2", conditionFor("c"), 0, calls, body);
+
+        assertThat(serve(cache, "v2", conditionFor("a"), 0, calls, body).getHeader(MemberResponseCache.CACHE_HEADER)).isEqualTo("HIT");
+        assertThat(serve(cache, "v2", conditionFor("b"), 0, calls, body).getHeader(MemberResponseCache.CACHE_HEADER)).isEqualTo("MISS");
+
+        final Map<String, Object> stats = cache.getStats();
+        assertThat((long) stats.get("usedBytes")).isLessThanOrEqualTo(64);
+        assertThat((long) stats.get("evictions")).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void deepPagesBypassCache() throws IOException {
+        final MemberResponseCache cache = new MemberResponseCache(objectMapper, true, 64 * 1024, 16, 8 * 1024, 1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        serve(cache, "v3", new MemberSearchCondition(), 2, calls, List.of("deep"));
+        final MockHttpServletResponse second = serve(cache, "v3", new MemberSearchCondition(), 2, calls, List.of("deep"));
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(second.getHeader(MemberResponseCache.CACHE_HEADER)).isEqualTo("BYPASS");
+    }
+
+    private static MemberSearchCondition conditionFor(String userName) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName(userName);
+        return condition;
+    }
+
+    private static MockHttpServletResponse serve(MemberResponseCache cache, String endpoint, MemberSearchCondition condition,
+                                                 int page, AtomicInteger calls, Object body) throws IOException {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        cache.serve(endpoint, condition, PageRequest.of(page, 20), response, () -> {
+            calls.incrementAndGet();
+            return body;
+        });
+        return response;
+    }
+}
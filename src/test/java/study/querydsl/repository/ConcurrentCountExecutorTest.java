@@ -0,0 +1,153 @@
+package study.querydsl.repository;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberEstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// count 는 별도 커넥션에서 돌기 때문에 테스트 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest
+public class ConcurrentCountExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    ConcurrentCountExecutor countExecutor;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${member.concurrent-count.pool-size:4}")
+    int countPoolSize;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            final Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    // 가득 찬 페이지라 동시에 시작한 count 를 기다려서 쓴다
+    @Test
+    public void concurrentCountIsAwaitedAndUsed(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        final long usedBefore = (long) countExecutor.getStats().get("used");
+
+        final Page<MemberTeamDto> page = memberRepository.searchPageConcurrent(condition, PageRequest.of(0, 1), 1000);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.hasNext()).isTrue();
+        assertThat((long) countExecutor.getStats().get("used")).isEqualTo(usedBefore + 1);
+    }
+
+    // 타임아웃이 나면 스레드 인터럽트가 아니라 statement 취소로 실행 중인 쿼리가 바로 끝난다
+    @Test
+    public void timedOutCountCancelsRunningStatement() throws InterruptedException {
+        final long timedOutBefore = (long) countExecutor.getStats().get("timedOut");
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        final ConcurrentCountExecutor.CountTask task = countExecutor.start(running -> {
+            final EntityManager countEntityManager = emf.createEntityManager();
+            try {
+                running.accept(countEntityManager.unwrap(Session.class));
+                // 취소하지 않으면 수십 초 이상 걸리는 쿼리
+                final Object count = countEntityManager
+                        .createNativeQuery("select count(*) from system_range(1, 2000000000) where mod(x, 7) = 3")
+                        .getSingleResult();
+                return ((Number) count).longValue();
+            } catch (RuntimeException e) {
+                failure.set(e);
+                throw e;
+            } finally {
+                running.accept(null);
+                countEntityManager.close();
+                finished.countDown();
+            }
+        });
+
+        assertThatThrownBy(() -> task.await(200)).isInstanceOf(QueryTimeoutException.class);
+        assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(failure.get()).isNotNull();
+        assertThat((long) countExecutor.getStats().get("timedOut")).isEqualTo(timedOutBefore + 1);
+    }
+
+    // count 가 시간 안에 안 끝나도 검색은 실패하지 않고, 읽은 컨텐츠와 추정 건수(exact=false)로 페이지를 돌려준다
+    @Test
+    public void timedOutCountDegradesToEstimatedPage(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        final long timedOutBefore = (long) countExecutor.getStats().get("timedOut");
+        // count 스레드를 모두 잡아 두면 검색의 count 는 큐에서 기다리다 타임아웃 난다
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < countPoolSize; i++) {
+            countExecutor.start(running -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0L;
+            });
+        }
+
+        try {
+            final Page<MemberTeamDto> page = memberRepository.searchPageConcurrent(condition, PageRequest.of(0, 1), 100);
+
+            assertThat(page.getContent()).hasSize(1);
+            assertThat(page).isInstanceOf(MemberEstimatedPage.class);
+            assertThat(((MemberEstimatedPage) page).isExact()).isFalse();
+            assertThat(page.hasNext()).isTrue();
+            assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(2);
+            assertThat((long) countExecutor.getStats().get("timedOut")).isEqualTo(timedOutBefore + 1);
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.config.StatementCounter;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 청크마다 별도 트랜잭션(REQUIRES_NEW)이 커밋되므로 @Transactional 롤백 대신 직접 데이터를 지운다
+@SpringBootTest
+public class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 1; i <= 10; i++) {
+                em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void bulkUpdateInChunks(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        final long count = memberBulkRepository.bulkUpdate(condition,
+                update -> update.set(member.age, member.age.add(1)), 3, 0);
+
+        assertThat(count).isEqualTo(5);
+        final Long ageSum = tx.execute(status -> em.createQuery(
+                "select sum(m.age) from Member m join m.team t where t.name = 'teamA'", Long.class)
+                .getSingleResult());
+        // 20 + 40 + 60 + 80 + 100 에 각각 +1
+        assertThat(ageSum).isEqualTo(305);
+    }
+
+    @Test
+    public void bulkUpdateEvictsOnlyAffectedMembers(){
+        tx.executeWithoutResult(status -> {
+            final Member young = em.createQuery("select m from Member m where m.username = 'member1'", Member.class)
+                    .getSingleResult();
+            final Member old = em.createQuery("select m from Member m where m.username = 'member9'", Member.class)
+                    .getSingleResult();
+
+            final MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setAgeGoe(50);
+            memberBulkRepository.bulkUpdate(condition, update -> update.set(member.username, "bulk"), 2, 0);
+
+            assertThat(em.contains(young)).isTrue();
+            assertThat(em.contains(old)).isFalse();
+            assertThat(em.find(Member.class, old.getId()).getUsername()).isEqualTo("bulk");
+        });
+    }
+
+    // 부분 문자열 조건은 검색과 같은 행(member1, member10)만 지운다 - 완전 일치로 바뀌어 member1 만 지우면 안 된다
+    @Test
+    public void bulkDeleteUsesUserNameMatch(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName("member1");
+        condition.setUserNameMatch(UsernameMatch.CONTAINS);
+
+        assertThat(memberBulkRepository.bulkDelete(condition, 1, 0)).isEqualTo(2);
+        assertThat(tx.execute(status -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult())).isEqualTo(8);
+    }
+
+    @Test
+    public void bulkDeleteInChunks(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(30);
+
+        assertThat(memberBulkRepository.bulkDelete(condition, 2, 1)).isEqualTo(3);
+        assertThat(tx.execute(status -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult())).isEqualTo(7);
+    }
+
+    // id 가 1 근처와 10억 근처로 떨어져 있어도 빈 청크 없이 keyset 으로 건너뛴다 - 청크마다 select 1 + update 1
+    @Test
+    public void sparseIdsDoNotRunEmptyChunks(){
+        tx.executeWithoutResult(status -> em.createNativeQuery(
+                "insert into member (member_id, username, age) values (1000000000, 'far', 99)")
+                .executeUpdate());
+
+        try (StatementCounter.Scope scope = StatementCounter.open("sparseBulkUpdate", StatementCounter.DEFAULT_REPEAT_THRESHOLD)) {
+            final long count = memberBulkRepository.bulkUpdate(new MemberSearchCondition(),
+                    update -> update.set(member.age, member.age.add(1)), 5, 0);
+
+            assertThat(count).isEqualTo(11);
+            // 5 + 5 + 1 건, 세 청크
+            assertThat(scope.getTotal()).isEqualTo(6);
+        }
+        assertThat(tx.execute(status -> em.createQuery("select m.age from Member m where m.username = 'far'", Integer.class)
+                .getSingleResult())).isEqualTo(100);
+    }
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 시계를 직접 움직여서 ttl / stale 구간을 확인한다
+public class MemberCountCacheTest {
+
+    private static final long TTL = 100;
+    private static final long STALE = 1000;
+
+    private final AtomicLong now = new AtomicLong();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    public void after(){
+        refreshExecutor.shutdownNow();
+    }
+
+    @Test
+    public void hitWithinTtl(){
+        final MemberCountCache cache = cache(10);
+
+        assertThat(cache.get(teamA(), () -> count(10))).isEqualTo(10);
+        now.set(TTL - 1);
+        assertThat(cache.get(teamA(), () -> count(20))).isEqualTo(10);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    // ttl 이 지났지만 stale 구간이면 이전 값을 주고 뒤에서 갱신한다
+    @Test
+    public void staleEntryIsServedAndRefreshedInBackground() throws Exception {
+        final MemberCountCache cache = cache(10);
+        cache.get(teamA(), () -> count(10));
+
+        now.set(TTL + 50);
+        assertThat(cache.get(teamA(), () -> count(20))).isEqualTo(10);
+        awaitRefresh();
+        assertThat(calls.get()).isEqualTo(2);
+
+        now.set(TTL + 60);
+        assertThat(cache.get(teamA(), () -> count(30))).isEqualTo(20);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    // stale 구간도 지나면 기다려서 다시 센다
+    @Test
+    public void expiredEntryIsLoadedSynchronously(){
+        final MemberCountCache cache = cache(10);
+        cache.get(teamA(), () -> count(10));
+
+        now.set(TTL + STALE);
+        assertThat(cache.get(teamA(), () -> count(20))).isEqualTo(20);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    // max-size 를 넘으면 가장 오래전에 읽은 항목을 내보낸다
+    @Test
+    public void oldestEntryIsEvictedAtMaxSize(){
+        final MemberCountCache cache = cache(2);
+        cache.get(team("teamA"), () -> count(1));
+        now.set(1);
+        cache.get(team("teamB"), () -> count(2));
+        now.set(2);
+        cache.get(team("teamC"), () -> count(3));
+
+        assertThat(cache.get(team("teamB"), () -> count(-1))).isEqualTo(2);
+        assertThat(cache.get(team("teamC"), () -> count(-1))).isEqualTo(3);
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(cache.get(team("teamA"), () -> count(10))).isEqualTo(10);
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    // 조회 중에 invalidateAll() 이 호출되면 그 결과는 담지 않는다
+    @Test
+    public void loadOverlappingInvalidateIsNotCached(){
+        final MemberCountCache cache = cache(10);
+
+        assertThat(cache.get(teamA(), () -> {
+            cache.invalidateAll();
+            return count(10);
+        })).isEqualTo(10);
+        assertThat(cache.get(teamA(), () -> count(20))).isEqualTo(20);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    // 갱신 중에 invalidateAll() 이 호출돼도 같다
+    @Test
+    public void refreshOverlappingInvalidateIsNotCached() throws Exception {
+        final MemberCountCache cache = cache(10);
+        cache.get(teamA(), () -> count(10));
+
+        now.set(TTL + 50);
+        cache.get(teamA(), () -> {
+            cache.invalidateAll();
+            return count(20);
+        });
+        awaitRefresh();
+        assertThat(cache.get(teamA(), () -> count(30))).isEqualTo(30);
+    }
+
+    @Test
+    public void statsCountHitsStaleHitsAndMisses() throws Exception {
+        final MemberCountCache cache = cache(10);
+        cache.get(teamA(), () -> count(10));
+        cache.get(teamA(), () -> count(10));
+        now.set(TTL + 50);
+        cache.get(teamA(), () -> count(10));
+        awaitRefresh();
+        cache.invalidateAll();
+
+        final Map<String, Object> stats = cache.getStats();
+        assertThat(stats.get("size")).isEqualTo(0);
+        assertThat(stats.get("hits")).isEqualTo(1L);
+        assertThat(stats.get("staleHits")).isEqualTo(1L);
+        assertThat(stats.get("misses")).isEqualTo(1L);
+        assertThat(stats.get("hitRatio")).isEqualTo(2.0 / 3);
+        assertThat(stats.get("refreshes")).isEqualTo(1L);
+        assertThat(stats.get("invalidations")).isEqualTo(1L);
+    }
+
+    private MemberCountCache cache(int maxSize) {
+        return new MemberCountCache(TTL, STALE, maxSize, now::get, refreshExecutor);
+    }
+
+    // 갱신 스레드가 하나뿐이므로 뒤에 넣은 작업이 끝나면 앞의 갱신도 끝났다
+    private void awaitRefresh() throws InterruptedException, ExecutionException {
+        refreshExecutor.submit(() -> { }).get();
+    }
+
+    private long count(long value) {
+        calls.incrementAndGet();
+        return value;
+    }
+
+    private static MemberSearchCondition teamA() {
+        return team("teamA");
+    }
+
+    private static MemberSearchCondition team(String teamName) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+}
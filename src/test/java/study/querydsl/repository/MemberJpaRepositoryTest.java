@@ -1,9 +1,12 @@
 package study.querydsl.repository;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.MaxStatements;
+import study.querydsl.config.StatementCountExtension;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -12,11 +15,13 @@ import study.querydsl.entity.Team;
 import javax.persistence.EntityManager;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @Transactional
+@ExtendWith(StatementCountExtension.class)
 public class MemberJpaRepositoryTest {
 
     @Autowired
@@ -83,4 +88,69 @@ public class MemberJpaRepositoryTest {
         final List<MemberTeamDto> result = memberJpaRepository.search(condition);
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    // 대용량 메모리 확인은 MemberExportTest.exportRetainsConstantHeap (gradle largeExportTest)
+    @Test
+    public void exportTest(){
+        final long rows = 10_000L;
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+
+        em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                "select x + 1000000000, concat('bulk', x), mod(x, 100), ? from system_range(1, ?)")
+                .setParameter(1, teamA.getId())
+                .setParameter(2, rows)
+                .executeUpdate();
+        em.clear();
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        final AtomicLong ageSum = new AtomicLong();
+        final long exported = memberJpaRepository.export(condition, 500, 500, dto -> ageSum.addAndGet(dto.getAge()));
+
+        assertThat(exported).isEqualTo(rows);
+        assertThat(ageSum.get()).isPositive();
+    }
+
+    @Test
+    @MaxStatements(1)
+    public void searchMemberFetchJoinTest(){
+        persistTeamsWithMembers();
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        final List<Member> result = memberJpaRepository.searchMemberFetchJoin(condition);
+
+        // 팀까지 한 번에 가져왔으므로 팀 이름을 꺼내도 추가 select 가 없다
+        assertThat(result).extracting(member -> member.getTeam().getName())
+                .containsExactlyInAnyOrder("teamA", "teamB", "teamB");
+    }
+
+    @Test
+    @MaxStatements(2)
+    public void searchMemberBatchFetchesTeams(){
+        persistTeamsWithMembers();
+
+        final List<Member> result = memberJpaRepository.searchMember(new MemberSearchCondition());
+
+        // 페치 조인이 없으면 팀 프록시가 남지만 in 절 한 번으로 모두 초기화된다
+        assertThat(result).extracting(member -> member.getTeam().getName())
+                .containsExactlyInAnyOrder("teamA", "teamA", "teamB", "teamB");
+    }
+
+    private void persistTeamsWithMembers(){
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 구간마다 별도 EntityManager 로 조회하므로 커밋된 데이터가 필요하다
+@SpringBootTest
+public class MemberPartitionedRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberPartitionedRepository memberPartitionedRepository;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 1; i <= 20; i++) {
+                em.persist(new Member("member" + i, i, i <= 10 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void partitionedSearchKeepsMemberIdOrder(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5);
+
+        final List<MemberTeamDto> single = memberPartitionedRepository.search(condition, 1);
+        final List<MemberTeamDto> partitioned = memberPartitionedRepository.search(condition, 4);
+
+        assertThat(partitioned).hasSize(16);
+        assertThat(partitioned).containsExactlyElementsOf(single);
+    }
+
+    // 앞부분 조건은 search 와 같은 like 로 건다 - member1, member10 ~ member19
+    @Test
+    public void partitionedSearchUsesUserNameMatch(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName("member1");
+        condition.setUserNameMatch(UsernameMatch.PREFIX);
+
+        assertThat(memberPartitionedRepository.search(condition, 3)).hasSize(11);
+    }
+
+    // 스레드 1개 + 대기 1개 - 구간 20개는 다 넣을 수 없으므로 쌓아두지 않고 바로 거절한다
+    @Test
+    public void fullQueueRejectsScan(){
+        final MemberPartitionedRepository small = new MemberPartitionedRepository(emf, 1, 1);
+        try {
+            assertThatThrownBy(() -> small.search(new MemberSearchCondition(), 20))
+                    .isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    public void partitionedEntitiesHaveTeamLoaded(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        final List<Member> members = memberPartitionedRepository.searchMember(condition, 3);
+
+        assertThat(members).hasSize(10);
+        assertThat(members).extracting(m -> m.getTeam().getName()).containsOnly("teamB");
+    }
+
+    @Test
+    public void averageAgeByTeamMergesPartitions(){
+        final Map<String, Double> averages = memberPartitionedRepository.averageAgeByTeam(new MemberSearchCondition(), 8);
+
+        assertThat(averages).containsEntry("teamA", 5.5).containsEntry("teamB", 15.5);
+    }
+}
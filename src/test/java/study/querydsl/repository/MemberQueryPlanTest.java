@@ -0,0 +1,173 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색 조건 16가지 모양의 실제 SQL 을 H2 EXPLAIN 으로 확인해서 인덱스를 타지 않는 쿼리가 생기면 실패한다.
+ * 데이터가 있어야 옵티마이저가 인덱스를 고르므로 커밋된 데이터로 ANALYZE 한 뒤 확인한다.
+ */
+@SpringBootTest
+public class MemberQueryPlanTest {
+
+    // 조건이 없으면 전체를 읽는 게 맞다
+    // 팀명 조건은 팀 디렉터리로 member.team_id 조건이 되므로 팀명만 있어도 (team_id, age) 인덱스를 탄다
+    private static final int NO_CONDITION = 0;
+    private static final Set<Integer> TABLE_SCAN_ALLOWED = Set.of(NO_CONDITION);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    ConcurrentCountExecutor countExecutor;
+
+    @Autowired
+    MemberQueryMetrics metrics;
+
+    @Autowired
+    TeamDirectory teamDirectory;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    TeamStatistics teamStatistics;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    MemberRepositoryImpl memberRepositoryImpl;
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        memberRepositoryImpl = new MemberRepositoryImpl(em, countCache, countExecutor, emf, metrics, teamDirectory, usernameIndex, teamStatistics);
+        tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            em.createNativeQuery("insert into team (id, name) " +
+                    "select x + 1000000000, concat('team', x) from system_range(1, 20)")
+                    .executeUpdate();
+            em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                    "select x + 1000000000, concat('member', x), mod(x, 100), mod(x, 20) + 1000000001 " +
+                    "from system_range(1, 10000)")
+                    .executeUpdate();
+        });
+        // ANALYZE 는 DDL 이라 트랜잭션 밖에서 실행한다
+        tx.executeWithoutResult(status -> em.createNativeQuery("analyze").executeUpdate());
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void contentQueryUsesIndex() {
+        for (int shape = 0; shape < 16; shape++) {
+            final MemberSearchCondition condition = conditionOf(shape);
+            final MemberSearchQueryCache.CompiledQuery query = memberRepositoryImpl.compiledContentQuery(condition);
+
+            assertPlan(shape, explain(query, condition));
+        }
+    }
+
+    @Test
+    public void countQueryUsesIndex() {
+        for (int shape = 0; shape < 16; shape++) {
+            final MemberSearchCondition condition = conditionOf(shape);
+            final MemberSearchQueryCache.CompiledQuery query = memberRepositoryImpl.compiledCountQuery(condition);
+
+            assertPlan(shape, explain(query, condition));
+        }
+    }
+
+    @Test
+    public void usernameConditionUsesUsernameIndex() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName("member3");
+        condition.setAgeGoe(0);
+
+        final String plan = explain(memberRepositoryImpl.compiledContentQuery(condition), condition);
+
+        assertThat(plan).containsIgnoringCase("idx_member_username");
+    }
+
+    private static MemberSearchCondition conditionOf(int shape) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & 1) != 0) condition.setUserName("member3");
+        if ((shape & 2) != 0) condition.setTeamName("team3");
+        if ((shape & 4) != 0) condition.setAgeGoe(20);
+        if ((shape & 8) != 0) condition.setAgeLoe(40);
+        return condition;
+    }
+
+    private static void assertPlan(int shape, String plan) {
+        if (TABLE_SCAN_ALLOWED.contains(shape)) {
+            return;
+        }
+        assertThat(plan).as("shape %d plan", shape).doesNotContainIgnoringCase("tableScan");
+    }
+
+    // JPQL -> SQL 은 Hibernate 의 쿼리 플랜 캐시로 번역하고, 파라미터는 리터럴로 바꿔 EXPLAIN 한다
+    private String explain(MemberSearchQueryCache.CompiledQuery query, MemberSearchCondition condition) {
+        final SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) emf.unwrap(SessionFactory.class);
+        final String[] sqls = sessionFactory.getQueryPlanCache()
+                .getHQLQueryPlan(query.getJpql(), false, Collections.emptyMap())
+                .getSqlStrings();
+        assertThat(sqls).hasSize(1);
+
+        final String sql = inline(sqls[0], query.bindValues(condition));
+        return tx.execute(status -> String.valueOf(em.createNativeQuery("explain " + sql).getSingleResult()));
+    }
+
+    private static String inline(String sql, List<Object> values) {
+        final StringBuilder inlined = new StringBuilder(sql.length() + 32);
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (c != '?') {
+                inlined.append(c);
+                continue;
+            }
+            final Object value = values.get(index++);
+            if (value instanceof Collection) {
+                // 팀 id 목록 - 실제 실행 때처럼 in 절 하나에 펼친다
+                inlined.append(((Collection<?>) value).stream().map(String::valueOf).collect(Collectors.joining(", ")));
+            } else if (value instanceof String) {
+                inlined.append('\'').append(((String) value).replace("'", "''")).append('\'');
+            } else {
+                inlined.append(value);
+            }
+        }
+        assertThat(index).as("bound parameters of %s", sql).isEqualTo(values.size());
+        return inlined.toString();
+    }
+}
@@ -0,0 +1,242 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberEstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+public class MemberRepositoryImplTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    ConcurrentCountExecutor countExecutor;
+
+    @Autowired
+    MemberQueryMetrics metrics;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    TeamDirectory teamDirectory;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    TeamStatistics teamStatistics;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    MemberRepositoryImpl memberRepositoryImpl;
+
+    @BeforeEach
+    public void before(){
+        memberRepositoryImpl = new MemberRepositoryImpl(em, countCache, countExecutor, emf, metrics, teamDirectory, usernameIndex, teamStatistics);
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    @Test
+    public void countQueryWithoutTeamNameHasNoJoin(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        final String jpql = memberRepositoryImpl.countQuery(condition).toString();
+
+        assertThat(jpql).doesNotContainIgnoringCase("join");
+        assertThat(jpql).contains("count(member1.id)");
+        assertThat(memberRepositoryImpl.count(condition)).isEqualTo(4);
+    }
+
+    // 팀명은 팀 디렉터리에서 팀 id 로 바뀌므로 count 쿼리에 조인이 없다
+    @Test
+    public void countQueryWithTeamNameHasNoJoin(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        final String jpql = memberRepositoryImpl.countQuery(condition).toString();
+
+        assertThat(jpql).doesNotContainIgnoringCase("join");
+        assertThat(jpql).contains("member1.team.id");
+        assertThat(memberRepositoryImpl.count(condition)).isEqualTo(2);
+    }
+
+    @Test
+    public void unknownTeamNameReturnsEmptyWithoutQuery(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamC");
+        // 팀 insert 를 내보내서 디렉터리를 미리 읽어 둔다
+        em.flush();
+        teamDirectory.idsOf("teamC");
+        final Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        final long queriesBefore = statistics.getQueryExecutionCount();
+
+        assertThat(memberRepositoryImpl.search(condition)).isEmpty();
+        assertThat(memberRepositoryImpl.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isZero();
+        assertThat(memberRepositoryImpl.count(condition)).isZero();
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(queriesBefore);
+    }
+
+    // 이름이 같은 팀이 여럿이면 모두 찾는다 - 새 팀 insert 로 디렉터리가 다시 읽힌다
+    @Test
+    public void teamNameMatchesEveryTeamWithThatName(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        assertThat(memberRepositoryImpl.search(condition)).hasSize(2);
+
+        final Team otherTeamB = new Team("teamB");
+        em.persist(otherTeamB);
+        em.persist(new Member("member6", 60, otherTeamB));
+        em.flush();
+
+        assertThat(memberRepositoryImpl.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member3", "member4", "member6");
+    }
+
+    @Test
+    public void countQueryWithoutConditionCountsMembersWithoutTeam(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        assertThat(memberRepositoryImpl.countQuery(condition).toString()).doesNotContainIgnoringCase("join");
+        assertThat(memberRepositoryImpl.count(condition)).isEqualTo(5);
+    }
+
+    // 16가지 조건 모양 모두 컴파일된 JPQL 결과가 Querydsl 로 직접 만든 쿼리 결과와 같아야 한다
+    @Test
+    public void compiledSearchMatchesQuerydslForEveryShape(){
+        for (int shape = 0; shape < 16; shape++) {
+            final MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & 1) != 0) condition.setUserName("member3");
+            if ((shape & 2) != 0) condition.setTeamName("teamB");
+            if ((shape & 4) != 0) condition.setAgeGoe(20);
+            if ((shape & 8) != 0) condition.setAgeLoe(40);
+
+            final List<MemberTeamDto> expected = memberRepositoryImpl.contentQuery(condition).fetch();
+            final List<MemberTeamDto> actual = memberRepositoryImpl.search(condition);
+
+            assertThat(actual).as("shape %d", shape).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(memberRepositoryImpl.count(condition)).as("shape %d", shape).isEqualTo(expected.size());
+        }
+    }
+
+    // 첫 페이지에 전체가 다 들어오면 count 가 필요 없으므로 동시에 시작한 count 는 취소된다
+    @Test
+    public void concurrentCountIsCancelledWhenNotNeeded(){
+        final long cancelledBefore = (long) countExecutor.getStats().get("cancelled");
+
+        final Page<MemberTeamDto> page = memberRepositoryImpl.searchPageConcurrent(
+                new MemberSearchCondition(), PageRequest.of(0, 10), 1000);
+
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat((long) countExecutor.getStats().get("cancelled")).isEqualTo(cancelledBefore + 1);
+    }
+
+    @Test
+    public void searchPageComplexRecordsSkippedCount(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        final double skippedBefore = countOf("searchPageComplex", "teamName", "skipped");
+        final double executedBefore = countOf("searchPageComplex", "teamName", "executed");
+
+        // 첫 페이지에 전부 들어오므로 count 쿼리를 생략한다
+        memberRepositoryImpl.searchPageComplex(condition, PageRequest.of(0, 10));
+        // 가득 찬 페이지라 count 쿼리가 필요하다
+        memberRepositoryImpl.searchPageComplex(condition, PageRequest.of(0, 1));
+
+        assertThat(countOf("searchPageComplex", "teamName", "skipped")).isEqualTo(skippedBefore + 1);
+        assertThat(countOf("searchPageComplex", "teamName", "executed")).isEqualTo(executedBefore + 1);
+
+        final Timer timer = meterRegistry.get(MemberQueryMetrics.QUERY_TIMER)
+                .tags("method", "searchPageComplex", "shape", "teamName")
+                .timer();
+        assertThat(timer.count()).isGreaterThanOrEqualTo(2);
+    }
+
+    // 팀 통계가 없는 조건은 countLimit + 1 건까지만 센다 - 넘으면 countLimit 을 하한으로 돌려준다
+    @Test
+    public void searchPageEstimatedStopsCountingAtLimit(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        final MemberEstimatedPage capped = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(0, 2), 3);
+        assertThat(capped.getContent()).hasSize(2);
+        assertThat(capped.getTotalElements()).isEqualTo(3);
+        assertThat(capped.isExact()).isFalse();
+        assertThat(capped.hasNext()).isTrue();
+
+        final MemberEstimatedPage counted = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(0, 2), 10);
+        assertThat(counted.getTotalElements()).isEqualTo(5);
+        assertThat(counted.isExact()).isTrue();
+
+        // 마지막 페이지는 count 없이 정확하다 - 가득 찬 마지막 페이지도 한 건 더 읽어서 안다
+        final MemberEstimatedPage last = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(2, 2), 3);
+        assertThat(last.getTotalElements()).isEqualTo(5);
+        assertThat(last.isExact()).isTrue();
+        final MemberEstimatedPage fullLast = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(0, 5), 3);
+        assertThat(fullLast.getTotalElements()).isEqualTo(5);
+        assertThat(fullLast.isExact()).isTrue();
+        assertThat(fullLast.isLast()).isTrue();
+    }
+
+    // 하한이 지금까지 읽은 건수와 같아도 다음 페이지가 있으면 isLast() 가 false 여야 끝까지 넘겨볼 수 있다
+    @Test
+    public void searchPageEstimatedFullPageAtOrPastLimitHasNext(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        final MemberEstimatedPage atLimit = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(0, 3), 3);
+        assertThat(atLimit.isExact()).isFalse();
+        assertThat(atLimit.getTotalElements()).isEqualTo(4);
+        assertThat(atLimit.isLast()).isFalse();
+        assertThat(atLimit.hasNext()).isTrue();
+
+        final MemberEstimatedPage pastLimit = memberRepositoryImpl.searchPageEstimated(condition, PageRequest.of(1, 2), 2);
+        assertThat(pastLimit.isExact()).isFalse();
+        assertThat(pastLimit.getTotalElements()).isEqualTo(5);
+        assertThat(pastLimit.isLast()).isFalse();
+        assertThat(pastLimit.hasNext()).isTrue();
+    }
+
+    private double countOf(String method, String shape, String outcome){
+        final Counter counter = meterRegistry.find(MemberQueryMetrics.COUNT_COUNTER)
+                .tags("method", method, "shape", shape, "outcome", outcome)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
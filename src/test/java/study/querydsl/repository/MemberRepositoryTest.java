@@ -1,12 +1,18 @@
 package study.querydsl.repository;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.MaxStatements;
+import study.querydsl.config.StatementCountExtension;
+import study.querydsl.config.StatementCounter;
+import study.querydsl.dto.MemberColumnarPage;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -14,12 +20,14 @@ import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @Transactional
+@ExtendWith(StatementCountExtension.class)
 public class MemberRepositoryTest {
     @Autowired
     EntityManager em;
@@ -28,6 +36,7 @@ public class MemberRepositoryTest {
     MemberRepository memberRepository;
 
     @Test
+    @MaxStatements(2)
     public void basicTest(){
         Member member = new Member("member1", 10);
 
@@ -45,6 +54,7 @@ public class MemberRepositoryTest {
     }
 
     @Test
+    @MaxStatements(1)
     public void searchTest(){
         Team teamA = new Team("teamA");
         Team teamB = new Team("teamB");
@@ -73,6 +83,7 @@ public class MemberRepositoryTest {
     }
 
     @Test
+    @MaxStatements(2)
     public void searchPageSimpleTest(){
 
 
@@ -101,6 +112,62 @@ public class MemberRepositoryTest {
     }
 
     @Test
+    @MaxStatements(2)
+    public void searchAfterTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        final MemberCursorPage first = memberRepository.searchAfter(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        final Long lastMemberId = MemberCursorPage.decodeCursor(first.getNextCursor());
+        final MemberCursorPage second = memberRepository.searchAfter(condition, lastMemberId, 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    @MaxStatements(1)
+    public void searchColumnarTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+
+        final MemberColumnarPage page = memberRepository.searchColumnar(new MemberSearchCondition(), PageRequest.of(0, 10));
+
+        assertThat(page.getRowCount()).isEqualTo(4);
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getAges()).containsExactly(10, 20, 30, 40);
+        assertThat(page.getTeamNames()).containsExactly("teamA", "teamB");
+        assertThat(page.getTeamOrdinals()).containsExactly(0, 0, 1, -1);
+        assertThat(page.getUsernames()).containsExactly("member1", "member2", "member3", "member4");
+    }
+
+    @Test
+    @MaxStatements(1)
     public void querydslPredicateExecutorTest(){
 
         Team teamA = new Team("teamA");
@@ -123,4 +190,55 @@ public class MemberRepositoryTest {
         final Iterable<Member> result = memberRepository.findAll(member.age.between(10, 40).and(member.username.eq("member1")));
         result.forEach(System.out::println);
     }
+
+    @Test
+    @MaxStatements(2)
+    public void lazyTeamAccessIsBatchFetched(){
+        persistMembersInOwnTeams(3);
+
+        // member.team 은 LAZY 지만 default_batch_fetch_size 로 남은 팀 프록시를 in 절 한 번으로 초기화한다 (1 + 1)
+        final List<Member> members = memberRepository.findAll();
+        members.forEach(member -> member.getTeam().getName());
+
+        final StatementCounter.Scope scope = StatementCounter.current().orElseThrow();
+        assertThat(scope.getSelects()).isEqualTo(2);
+        assertThat(scope.getRepeated()).isEmpty();
+    }
+
+    @Test
+    @MaxStatements(1)
+    public void findAllWithTeamFetchesTeamInSameSelect(){
+        persistMembersInOwnTeams(3);
+
+        final List<Member> members = memberRepository.findAllWithTeam();
+
+        assertThat(members).extracting(member -> member.getTeam().getName())
+                .containsExactlyInAnyOrder("team0", "team1", "team2");
+    }
+
+    @Test
+    @MaxStatements(3)
+    public void findByIdInLoopIsDetectedAsNPlusOne(){
+        final List<Long> ids = persistMembersInOwnTeams(3);
+
+        // 파라미터만 다른 같은 select 가 반복되면 호출 위치와 함께 N+1 로 잡힌다
+        ids.forEach(id -> memberRepository.findById(id).orElseThrow());
+
+        final StatementCounter.Scope scope = StatementCounter.current().orElseThrow();
+        assertThat(scope.getRepeated()).anyMatch(repeated -> repeated.contains("from member"));
+    }
+
+    private List<Long> persistMembersInOwnTeams(int count){
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Team team = new Team("team" + i);
+            em.persist(team);
+            final Member member = new Member("member" + i, 10 + i, team);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+        return ids;
+    }
 }
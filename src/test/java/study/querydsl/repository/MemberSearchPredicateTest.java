@@ -0,0 +1,147 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.StatementCounter;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// userName/teamName/ageGoe/ageLoe 네 필드의 모든 조합을 메모리에서 거른 결과와 비교한다
+@SpringBootTest
+@Transactional
+public class MemberSearchPredicateTest {
+
+    // {회원명, 나이, 팀명}
+    private static final Object[][] MEMBERS = {
+            {"member1", 10, "teamA"},
+            {"member2", 20, "teamA"},
+            {"member3", 30, "teamB"},
+            {"member4", 40, "teamB"},
+            {"member5", 50, null}
+    };
+
+    // {ageGoe, ageLoe} - 보통 범위, 한 점, 빈 범위
+    private static final int[][] AGE_RANGES = {{20, 40}, {30, 30}, {40, 20}};
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before(){
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (Object[] row : MEMBERS) {
+            final Team team = "teamA".equals(row[2]) ? teamA : "teamB".equals(row[2]) ? teamB : null;
+            em.persist(new Member((String) row[0], (Integer) row[1], team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    static Stream<Arguments> conditions() {
+        final List<Arguments> arguments = new ArrayList<>();
+        for (int shape = 0; shape < 16; shape++) {
+            // 나이 조건이 둘 다 있을 때만 범위 종류가 의미 있다
+            final int ranges = (shape & 0b1100) == 0b1100 ? AGE_RANGES.length : 1;
+            for (int range = 0; range < ranges; range++) {
+                final MemberSearchCondition condition = new MemberSearchCondition();
+                if ((shape & 1) != 0) condition.setUserName("member3");
+                if ((shape & 1 << 1) != 0) condition.setTeamName("teamB");
+                if ((shape & 1 << 2) != 0) condition.setAgeGoe(AGE_RANGES[range][0]);
+                if ((shape & 1 << 3) != 0) condition.setAgeLoe(AGE_RANGES[range][1]);
+                arguments.add(Arguments.of(condition));
+            }
+        }
+        return arguments.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("conditions")
+    public void searchMatchesInMemoryFilter(MemberSearchCondition condition){
+        final List<String> expected = expected(condition);
+
+        assertThat(memberRepository.search(condition))
+                .extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getContent())
+                .extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(memberJpaRepository.search(condition))
+                .extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrderElementsOf(expected);
+        // 나이 조건이 한쪽만 있어도 between 으로 합치다가 NPE 가 나지 않는다
+        assertThat(memberJpaRepository.searchMember(condition))
+                .extracting(Member::getUsername)
+                .containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    public void emptyAgeRangeRunsNoSql(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(50);
+        condition.setAgeLoe(10);
+
+        try (StatementCounter.Scope scope = StatementCounter.open("emptyAgeRange", StatementCounter.DEFAULT_REPEAT_THRESHOLD)) {
+            final Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+            assertThat(page.getContent()).isEmpty();
+            assertThat(page.getTotalElements()).isEqualTo(0);
+            assertThat(memberRepository.searchPageSimple(condition, PageRequest.of(1, 10)).getTotalElements()).isEqualTo(0);
+            assertThat(memberRepository.search(condition)).isEmpty();
+            assertThat(memberJpaRepository.searchMember(condition)).isEmpty();
+            assertThat(memberJpaRepository.searchMemberFetchJoin(condition)).isEmpty();
+
+            assertThat(scope.getTotal()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void equivalentConditionsShareCanonicalForm(){
+        final MemberSearchCondition blank = new MemberSearchCondition();
+        blank.setUserName("");
+        blank.setTeamName("  ");
+        blank.setAgeGoe(20);
+
+        final MemberSearchCondition empty = new MemberSearchCondition();
+        empty.setAgeGoe(20);
+
+        assertThat(blank.normalized()).isEqualTo(empty.normalized());
+        assertThat(blank.normalized().hashCode()).isEqualTo(empty.normalized().hashCode());
+    }
+
+    private static List<String> expected(MemberSearchCondition condition) {
+        return Stream.of(MEMBERS)
+                .filter(row -> condition.getUserName() == null || condition.getUserName().equals(row[0]))
+                .filter(row -> condition.getTeamName() == null || condition.getTeamName().equals(row[2]))
+                .filter(row -> condition.getAgeGoe() == null || (Integer) row[1] >= condition.getAgeGoe())
+                .filter(row -> condition.getAgeLoe() == null || (Integer) row[1] <= condition.getAgeLoe())
+                .map(row -> (String) row[0])
+                .collect(Collectors.toList());
+    }
+}
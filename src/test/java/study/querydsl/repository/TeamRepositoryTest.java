@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 2차 캐시는 커밋된 데이터만 담으므로 @Transactional 롤백 대신 트랜잭션을 직접 나눈다
+@SpringBootTest
+public class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Long teamId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        teamId = tx.execute(status -> teamRepository.save(new Team("cachedTeam")).getId());
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void repeatedTeamLoadsHitSecondLevelCache(){
+        statistics.clear();
+
+        for (int i = 0; i < 3; i++) {
+            tx.executeWithoutResult(status ->
+                    assertThat(em.find(Team.class, teamId).getName()).isEqualTo("cachedTeam"));
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    public void findByNameUsesQueryCache(){
+        tx.executeWithoutResult(status -> assertThat(teamRepository.findByName("cachedTeam")).hasSize(1));
+        statistics.clear();
+
+        tx.executeWithoutResult(status -> assertThat(teamRepository.findByName("cachedTeam")).hasSize(1));
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void teamUpdateInvalidatesQueryCache(){
+        tx.executeWithoutResult(status -> teamRepository.findByName("cachedTeam"));
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId).setName("renamedTeam"));
+
+        tx.executeWithoutResult(status -> {
+            assertThat(teamRepository.findByName("cachedTeam")).isEmpty();
+            assertThat(teamRepository.findByName("renamedTeam")).hasSize(1);
+        });
+    }
+
+    // Team.members 는 mappedBy 쪽이라 캐시된 컬렉션이 Member.team 변경을 따라오지 못하면 이전 팀에 계속 보인다
+    @Test
+    public void changeTeamEvictsBothMembersCollections(){
+        final Long otherTeamId = tx.execute(status -> teamRepository.save(new Team("otherTeam")).getId());
+        final Long memberId = tx.execute(status -> {
+            final Member member = new Member("member1", 10, em.find(Team.class, teamId));
+            em.persist(member);
+            return member.getId();
+        });
+        // 두 팀의 컬렉션을 캐시에 올린다
+        tx.executeWithoutResult(status -> {
+            assertThat(em.find(Team.class, teamId).getMembers()).hasSize(1);
+            assertThat(em.find(Team.class, otherTeamId).getMembers()).isEmpty();
+        });
+
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId).changeTeam(em.find(Team.class, otherTeamId)));
+
+        tx.executeWithoutResult(status -> {
+            assertThat(em.find(Team.class, teamId).getMembers()).isEmpty();
+            assertThat(em.find(Team.class, otherTeamId).getMembers())
+                    .extracting(Member::getId)
+                    .containsExactly(memberId);
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.config.StatementCounter;
+import study.querydsl.dto.MemberEstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 통계는 커밋된 변경(엔티티 이벤트)만 반영하므로 테스트 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest
+public class TeamStatisticsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamStatistics teamStatistics;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamDirectory teamDirectory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            final Team teamA = new Team("teamA");
+            final Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+            em.persist(new Member("member5", 50));
+        });
+        // 다른 테스트가 벌크로 지운 팀이 남아 있을 수 있다
+        teamStatistics.reconcile();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void statsMatchGroupByWithoutSql(){
+        try (StatementCounter.Scope scope = StatementCounter.open("teamStats", StatementCounter.DEFAULT_REPEAT_THRESHOLD)) {
+            final List<TeamStatsDto> stats = teamStatistics.getTeamStats();
+            assertThat(scope.getTotal()).isEqualTo(0);
+
+            assertThat(stats).extracting(TeamStatsDto::getTeamName).containsExactly("teamA", "teamB");
+            assertThat(stats.get(0).getAgeAvg()).isEqualTo(15.0);
+            assertThat(stats.get(1).getAgeAvg()).isEqualTo(35.0);
+        }
+        assertThat(describe(teamStatistics.getTeamStats())).isEqualTo(groupBy());
+    }
+
+    // changeTeam, 나이 수정, 삭제, 저장을 이벤트만으로 반영한다 - 최소/최대인 회원이 빠지면 그 팀만 다시 읽는다
+    @Test
+    public void committedChangesAreAppliedIncrementally(){
+        final Long teamAId = teamIdOf("teamA");
+        final Long teamBId = teamIdOf("teamB");
+
+        tx.executeWithoutResult(status -> {
+            memberOf("member1").changeTeam(em.getReference(Team.class, teamBId));
+            memberOf("member3").setAge(33);
+            em.remove(memberOf("member4"));
+            em.persist(new Member("member6", 60, em.getReference(Team.class, teamAId)));
+        });
+
+        final List<TeamStatsDto> stats = teamStatistics.getTeamStats();
+        assertThat(stats).extracting(TeamStatsDto::getMemberCount).containsExactly(2L, 2L);
+        assertThat(stats).extracting(TeamStatsDto::getAgeSum).containsExactly(80L, 43L);
+
+        teamStatistics.reconcile();
+        assertThat(describe(teamStatistics.getTeamStats())).isEqualTo(groupBy());
+    }
+
+    @Test
+    public void reconcileCatchesBulkUpdates(){
+        tx.executeWithoutResult(status -> em.createQuery("update Member m set m.age = m.age + 1").executeUpdate());
+
+        teamStatistics.reconcile();
+        final List<TeamStatsDto> stats = teamStatistics.getTeamStats();
+        assertThat(stats).extracting(TeamStatsDto::getAgeMin).containsExactly(11, 31);
+        assertThat(describe(stats)).isEqualTo(groupBy());
+    }
+
+    // 팀명 조건의 추정 전체 건수는 팀 통계에서 - 컨텐츠 쿼리만 나간다
+    @Test
+    public void estimatedPageUsesTeamStatistics(){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        memberRepository.searchPageEstimated(condition, PageRequest.of(0, 1), 10);
+
+        try (StatementCounter.Scope scope = StatementCounter.open("estimatedPage", StatementCounter.DEFAULT_REPEAT_THRESHOLD)) {
+            final MemberEstimatedPage page = memberRepository.searchPageEstimated(condition, PageRequest.of(0, 1), 10);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(page.isExact()).isFalse();
+            assertThat(scope.getTotal()).isEqualTo(1);
+        }
+
+        // 나이는 팀의 최소~최대(30~40) 사이에 고르게 있다고 보고 비율만큼 센다
+        assertThat(teamStatistics.estimateMembers(teamDirectory.idsOf("teamB"), 35, null)).isEqualTo(1);
+        assertThat(teamStatistics.estimateMembers(teamDirectory.idsOf("teamB"), 41, null)).isEqualTo(0);
+    }
+
+    private List<String> describe(List<TeamStatsDto> stats) {
+        return stats.stream()
+                .map(s -> s.getTeamName() + " " + s.getMemberCount() + " " + s.getAgeSum() + " " + s.getAgeMin() + " " + s.getAgeMax())
+                .collect(Collectors.toList());
+    }
+
+    private List<String> groupBy() {
+        return tx.execute(status -> em.createQuery(
+                "select t.name, count(m), sum(m.age), min(m.age), max(m.age) from Member m join m.team t"
+                        + " group by t.id, t.name order by t.id", Object[].class)
+                .getResultList()
+                .stream()
+                .map(row -> row[0] + " " + row[1] + " " + row[2] + " " + row[3] + " " + row[4])
+                .collect(Collectors.toList()));
+    }
+
+    private Member memberOf(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+
+    private Long teamIdOf(String name) {
+        return tx.execute(status -> em.createQuery("select t.id from Team t where t.name = :name", Long.class)
+                .setParameter("name", name)
+                .getSingleResult());
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.config.StatementCounter;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 인덱스는 커밋된 변경(엔티티 이벤트)만 반영하므로 테스트 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest(properties = "member.username-index.max-candidates=3")
+public class UsernameIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("kim", 10));
+            em.persist(new Member("kimchi", 20));
+            em.persist(new Member("kimbap", 30));
+            em.persist(new Member("lee", 40));
+            em.persist(new Member("park_kim", 50));
+            em.persist(new Member("a%b", 60));
+        });
+        usernameIndex.rebuild();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void prefixAndContainsSearch(){
+        assertThat(usernameIndex.candidates(UsernameMatch.PREFIX, "kim")).hasSize(3);
+        assertThat(search(UsernameMatch.PREFIX, "kim")).containsExactlyInAnyOrder("kim", "kimchi", "kimbap");
+        assertThat(search(UsernameMatch.CONTAINS, "chi")).containsExactly("kimchi");
+        assertThat(search(UsernameMatch.CONTAINS, "p_k")).containsExactly("park_kim");
+        // like 와일드카드 문자는 글자 그대로 찾는다
+        assertThat(search(UsernameMatch.CONTAINS, "%")).containsExactly("a%b");
+        assertThat(search(UsernameMatch.EXACT, "kim")).containsExactly("kim");
+    }
+
+    // 후보가 max-candidates 를 넘으면 인덱스 없이 like 로 찾는다
+    @Test
+    public void tooManyCandidatesFallsBackToLike(){
+        assertThat(usernameIndex.candidates(UsernameMatch.CONTAINS, "im")).isNull();
+        assertThat(search(UsernameMatch.CONTAINS, "im")).containsExactlyInAnyOrder("kim", "kimchi", "kimbap", "park_kim");
+    }
+
+    @Test
+    public void noCandidateRunsNoSql(){
+        try (StatementCounter.Scope scope = StatementCounter.open("noCandidate", StatementCounter.DEFAULT_REPEAT_THRESHOLD)) {
+            assertThat(search(UsernameMatch.PREFIX, "choi")).isEmpty();
+            assertThat(scope.getTotal()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void committedEntityChangesAreIndexed(){
+        final Long kimbapId = idOf("kimbap");
+        final Long leeId = idOf("lee");
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("kimjong", 70));
+            em.find(Member.class, leeId).setUsername("kimlee");
+            em.remove(em.find(Member.class, kimbapId));
+        });
+
+        assertThat(usernameIndex.candidates(UsernameMatch.PREFIX, "kimj")).containsExactly(idOf("kimjong"));
+        assertThat(usernameIndex.candidates(UsernameMatch.PREFIX, "lee")).isEmpty();
+        assertThat(usernameIndex.candidates(UsernameMatch.PREFIX, "kimb")).isEmpty();
+        assertThat(search(UsernameMatch.CONTAINS, "lee")).containsExactly("kimlee");
+    }
+
+    // 벌크 update 는 엔티티 이벤트가 없으므로 MemberBulkRepository 가 끝난 뒤 인덱스를 다시 만든다
+    @Test
+    public void bulkRenameIsIndexed() throws InterruptedException {
+        final long rebuildsBefore = (long) usernameIndex.getStats().get("rebuilds");
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName("lee");
+
+        memberBulkRepository.bulkUpdate(condition, update -> update.set(member.username, "choi"));
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ((long) usernameIndex.getStats().get("rebuilds") == rebuildsBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat((long) usernameIndex.getStats().get("rebuilds")).isGreaterThan(rebuildsBefore);
+        assertThat(search(UsernameMatch.PREFIX, "cho")).containsExactly("choi");
+    }
+
+    // 회원명이 그대로인 엔티티 수정(update 문은 모든 컬럼을 쓴다)으로는 전체 재구성을 하지 않는다
+    @Test
+    public void entityUpdateWithoutRenameDoesNotRebuild(){
+        final long invalidationsBefore = (long) usernameIndex.getStats().get("invalidations");
+
+        tx.executeWithoutResult(status -> em.createQuery("select m from Member m where m.username = 'kim'", Member.class)
+                .getSingleResult()
+                .setAge(11));
+
+        assertThat((long) usernameIndex.getStats().get("invalidations")).isEqualTo(invalidationsBefore);
+        assertThat(usernameIndex.getStats().get("delta")).isEqualTo(0);
+    }
+
+    private List<String> search(UsernameMatch match, String userName){
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUserName(userName);
+        condition.setUserNameMatch(match);
+        return memberRepository.search(condition).stream().map(MemberTeamDto::getUsername).collect(Collectors.toList());
+    }
+
+    private Long idOf(String username){
+        return tx.execute(status -> em.createQuery("select m.id from Member m where m.username = :username", Long.class)
+                .setParameter("username", username)
+                .getSingleResult());
+    }
+}